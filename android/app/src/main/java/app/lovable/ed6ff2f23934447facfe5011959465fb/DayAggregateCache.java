@@ -0,0 +1,171 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.LruCache;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
+// Two-level cache of per-day aggregates keyed by local date and zone: an
+// in-memory LRU in front of a small private prefs file. Past days stay valid
+// until invalidated; today's entry expires after a short TTL because it is
+// still being written to.
+//
+// The prefs file is held in memory and rewritten whole on every apply(), so
+// it only keeps the current zone's last RETAINED_DAYS days. Older days and
+// other zones are pruned on the first put of each day or after a zone change.
+//
+// Reads run concurrently with invalidation, so a day read before an
+// invalidation could finish after it and cache stale data. Every invalidation
+// advances a generation; a read takes generation() before it starts and its
+// put() is dropped if the generation has moved on since.
+public class DayAggregateCache {
+    private static final String PREFS_NAME = "health_day_cache";
+    private static final int MEMORY_ENTRIES = 400;
+    private static final int RETAINED_DAYS = MEMORY_ENTRIES;
+    private static final long TODAY_TTL_MILLIS = 5 * 60 * 1000;
+
+    private final LruCache<String, CachedDay> memory = new LruCache<>(MEMORY_ENTRIES);
+    private final SharedPreferences disk;
+
+    // Guarded by this
+    private long generation;
+    // Guarded by this; what the disk file was last pruned for
+    private LocalDate prunedOn;
+    private ZoneId prunedZone;
+
+    public DayAggregateCache(Context context) {
+        this.disk = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    // Returns the cached day, possibly empty (no data that day), or null when it must be collected.
+    public DayAggregate get(LocalDate date, ZoneId zone) {
+        String key = key(date, zone);
+        CachedDay cached = memory.get(key);
+        if (cached == null) {
+            cached = CachedDay.decode(date, disk.getString(key, null));
+            if (cached != null) {
+                memory.put(key, cached);
+            }
+        }
+
+        if (cached == null) {
+            return null;
+        }
+        if (!date.isBefore(LocalDate.now(zone)) && System.currentTimeMillis() - cached.cachedAt > TODAY_TTL_MILLIS) {
+            return null;
+        }
+        return cached.day;
+    }
+
+    public synchronized long generation() {
+        return generation;
+    }
+
+    // Not cached when something was invalidated after readGeneration was taken.
+    public synchronized void put(DayAggregate day, ZoneId zone, long readGeneration) {
+        if (readGeneration != generation) {
+            return;
+        }
+        LocalDate today = LocalDate.now(zone);
+        if (day.date.isBefore(today.minusDays(RETAINED_DAYS))) {
+            // Would be pruned again right away
+            return;
+        }
+
+        String key = key(day.date, zone);
+        CachedDay cached = new CachedDay(day, System.currentTimeMillis());
+        memory.put(key, cached);
+        SharedPreferences.Editor editor = disk.edit().putString(key, cached.encode());
+        pruneIfDue(editor, today, zone);
+        editor.apply();
+    }
+
+    public synchronized void invalidate(LocalDate date, ZoneId zone) {
+        generation++;
+        String key = key(date, zone);
+        memory.remove(key);
+        disk.edit().remove(key).apply();
+    }
+
+    public synchronized void clear() {
+        generation++;
+        memory.evictAll();
+        disk.edit().clear().apply();
+    }
+
+    private synchronized void pruneIfDue(SharedPreferences.Editor editor, LocalDate today, ZoneId zone) {
+        if (today.equals(prunedOn) && zone.equals(prunedZone)) {
+            return;
+        }
+        LocalDate oldest = today.minusDays(RETAINED_DAYS);
+        String suffix = "|" + zone.getId();
+        for (String key : disk.getAll().keySet()) {
+            if (!key.endsWith(suffix) || dateOf(key).isBefore(oldest)) {
+                memory.remove(key);
+                editor.remove(key);
+            }
+        }
+        prunedOn = today;
+        prunedZone = zone;
+    }
+
+    // Keys that do not parse sort before any retained day, so they are pruned too
+    private static LocalDate dateOf(String key) {
+        int separator = key.indexOf('|');
+        try {
+            return LocalDate.parse(separator < 0 ? key : key.substring(0, separator));
+        } catch (DateTimeParseException e) {
+            return LocalDate.MIN;
+        }
+    }
+
+    private static String key(LocalDate date, ZoneId zone) {
+        return date + "|" + zone.getId();
+    }
+
+    private static final class CachedDay {
+        final DayAggregate day;
+        final long cachedAt;
+
+        CachedDay(DayAggregate day, long cachedAt) {
+            this.day = day;
+            this.cachedAt = cachedAt;
+        }
+
+        // cachedAt,steps,hrAvg,hrMin,hrMax,sleepHours,calories with empty fields for nulls
+        String encode() {
+            return cachedAt + "," + field(day.steps) + "," + field(day.heartRateAvg) + ","
+                + field(day.heartRateMin) + "," + field(day.heartRateMax) + ","
+                + field(day.sleepHours) + "," + field(day.calories);
+        }
+
+        static CachedDay decode(LocalDate date, String encoded) {
+            if (encoded == null) {
+                return null;
+            }
+            String[] fields = encoded.split(",", -1);
+            if (fields.length != 7) {
+                return null;
+            }
+            try {
+                DayAggregate day = new DayAggregate(date, parseLong(fields[1]), parseLong(fields[2]),
+                    parseLong(fields[3]), parseLong(fields[4]),
+                    fields[5].isEmpty() ? null : Double.valueOf(fields[5]), parseLong(fields[6]));
+                return new CachedDay(day, Long.parseLong(fields[0]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static String field(Object value) {
+            return value == null ? "" : value.toString();
+        }
+
+        private static Long parseLong(String value) {
+            return value.isEmpty() ? null : Long.valueOf(value);
+        }
+    }
+}
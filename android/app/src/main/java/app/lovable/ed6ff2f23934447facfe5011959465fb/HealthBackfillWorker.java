@@ -0,0 +1,237 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import android.content.Context;
+import android.util.Log;
+import androidx.health.connect.client.HealthConnectClient;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+// Uploads the history from before the regular sync window, one chunk of days
+// per run, walking back from the window to a horizon fixed when the backfill
+// first runs. A run reads its chunk, uploads it and only then moves the
+// checkpoint back, so after process death or a reboot the chain resumes with
+// the first chunk the server has not acknowledged. Runs are chained through
+// SyncScheduler, one WorkManager job per chunk.
+//
+// Regular syncs come first: a run that finds one in progress, or the circuit
+// breaker open, puts itself back in the queue instead of competing for the
+// server and the read quota.
+public class HealthBackfillWorker extends Worker {
+    private static final String TAG = "HealthBackfillWorker";
+
+    public static final String INPUT_HORIZON_DAYS = "horizon_days";
+    public static final String INPUT_ATTEMPT = "attempt";
+    public static final int DEFAULT_HORIZON_DAYS = 365;
+
+    // Oldest day uploaded so far, and the oldest day to reach, as ISO dates
+    public static final String KEY_BACKFILL_CURSOR = "backfill_cursor";
+    public static final String KEY_BACKFILL_HORIZON = "backfill_horizon";
+
+    // Inside one of HealthDataCollector's planned reads, so a chunk is read whole or not at all
+    private static final int CHUNK_DAYS = 30;
+    private static final long CREDENTIALS_TIMEOUT_SECONDS = 10;
+    private static final long MAX_BATCH_BYTES = 64 * 1024;
+    private static final int MAX_UPLOADS_IN_FLIGHT = 1;
+    private static final long YIELD_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    private static final long MIN_QUOTA_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long RETRY_BASE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long RETRY_CAP_MILLIS = TimeUnit.HOURS.toMillis(6);
+    private static final int MAX_RETRY_ATTEMPTS = 10;
+
+    private final HealthCredentialStore credentialStore;
+    private final HealthTokenManager tokenManager;
+    private final SyncCircuitBreaker circuitBreaker;
+    private final int horizonDays;
+    private final int attempt;
+    private final Random random = new Random();
+    private HealthConnectClient healthConnectClient;
+
+    public HealthBackfillWorker(Context context, WorkerParameters params) {
+        super(context, params);
+        if (HealthConnectClient.getSdkStatus(context) == HealthConnectClient.SDK_AVAILABLE) {
+            this.healthConnectClient = HealthConnectClient.getOrCreate(context);
+        }
+        this.credentialStore = HealthCredentialStore.getInstance(context);
+        this.tokenManager = HealthTokenManager.getInstance(context);
+        this.circuitBreaker = SyncCircuitBreaker.getInstance(context);
+        this.horizonDays = params.getInputData().getInt(INPUT_HORIZON_DAYS, DEFAULT_HORIZON_DAYS);
+        this.attempt = params.getInputData().getInt(INPUT_ATTEMPT, 0);
+    }
+
+    @Override
+    public Result doWork() {
+        try {
+            if (healthConnectClient == null) {
+                Log.w(TAG, "Health Connect not available");
+                return Result.failure();
+            }
+            if (!credentialStore.awaitReady(CREDENTIALS_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                return retryLater("Credential store not ready", 0);
+            }
+
+            String deviceId = credentialStore.getDeviceId();
+            String hmacSecret = credentialStore.getHmacSecret();
+            if (deviceId == null || hmacSecret == null) {
+                Log.w(TAG, "Device not registered");
+                return Result.failure();
+            }
+
+            LocalDate today = LocalDate.now();
+            LocalDate horizon = loadHorizon(today);
+            LocalDate cursor = loadCursor(today);
+            if (!cursor.isAfter(horizon)) {
+                Log.d(TAG, "Backfill complete down to " + horizon);
+                return Result.success();
+            }
+
+            if (SyncScheduler.isRegularSyncRunning(getApplicationContext())) {
+                Log.d(TAG, "Yielding to a regular sync");
+                return next(YIELD_DELAY_MILLIS, attempt);
+            }
+            long now = System.currentTimeMillis();
+            long blockedUntil = circuitBreaker.blockedUntil(now);
+            if (blockedUntil > 0) {
+                return next(blockedUntil - now, attempt);
+            }
+            // The chain resumes from the companion screen once the app hands over a session
+            String jwtToken = tokenManager.getValidToken();
+            if (jwtToken == null) {
+                Log.w(TAG, "No valid session, backfill paused");
+                return Result.failure();
+            }
+
+            LocalDate chunkEnd = cursor.minusDays(1);
+            LocalDate chunkStart = cursor.minusDays(CHUNK_DAYS);
+            if (chunkStart.isBefore(horizon)) {
+                chunkStart = horizon;
+            }
+            SortedSet<LocalDate> dates = new TreeSet<>();
+            for (LocalDate date = chunkStart; !date.isAfter(chunkEnd); date = date.plusDays(1)) {
+                dates.add(date);
+            }
+
+            HealthDataCollector collector = new HealthDataCollector(healthConnectClient,
+                HealthSyncService.DEFAULT_HEART_RATE_BUCKET_MINUTES);
+            HealthDataCollector.PlannedRead read = collector.collectPlanned(dates, null, null,
+                Collections.<String>emptyList(), HealthReadQuota.background(getApplicationContext()));
+            if (!read.deferred.isEmpty()) {
+                Log.d(TAG, "Read quota exhausted, chunk from " + chunkStart + " waits");
+                return next(Math.max(read.retryAfterMillis, MIN_QUOTA_WAIT_MILLIS), attempt);
+            }
+
+            if (!read.days.isEmpty()) {
+                Result failed = upload(deviceId, hmacSecret, jwtToken, read.days);
+                if (failed != null) {
+                    return failed;
+                }
+            }
+
+            // Only acknowledged chunks move the checkpoint
+            credentialStore.edit()
+                .putString(KEY_BACKFILL_CURSOR, chunkStart.toString())
+                .apply();
+            Log.d(TAG, "Backfilled " + read.days.size() + " days from " + chunkStart + " to " + chunkEnd);
+
+            if (chunkStart.isAfter(horizon)) {
+                return next(0, 0);
+            }
+            Log.d(TAG, "Backfill complete down to " + horizon);
+            return Result.success();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.retry();
+        } catch (Exception e) {
+            Log.e(TAG, "Error during health backfill", e);
+            return retryLater(e.getMessage(), 0);
+        }
+    }
+
+    // Null once every day is acknowledged, otherwise the run's result.
+    private Result upload(String deviceId, String hmacSecret, String jwtToken, List<DayAggregate> days)
+            throws Exception {
+        List<SyncOutbox.Entry> entries = new ArrayList<>(days.size());
+        for (DayAggregate day : days) {
+            entries.add(SyncOutbox.Entry.unqueued(day));
+        }
+
+        SyncUploader uploader = new SyncUploader(HealthHttpClient.get(), MAX_UPLOADS_IN_FLIGHT, MAX_BATCH_BYTES);
+        uploader.setDigestLedger(SyncDigestLedger.getInstance(getApplicationContext()));
+        List<SyncOutbox.Entry> acknowledged = uploader.upload(deviceId, hmacSecret, jwtToken, entries);
+
+        if (uploader.isUnauthorized()) {
+            // Refresh and resend the chunk once, as the regular sync does
+            String refreshed = tokenManager.refreshAfterUnauthorized(jwtToken);
+            if (refreshed == null) {
+                Log.w(TAG, "Session expired, backfill paused");
+                return Result.failure();
+            }
+            acknowledged = uploader.upload(deviceId, hmacSecret, refreshed, entries);
+            if (uploader.isUnauthorized()) {
+                Log.w(TAG, "Refreshed session refused, backfill paused");
+                return Result.failure();
+            }
+        }
+
+        // Invalid days would be refused on every retry; skip past them
+        int rejected = uploader.getRejected().size();
+        if (rejected > 0) {
+            Log.w(TAG, "Skipping " + rejected + " days the server rejected as invalid");
+        }
+        if (acknowledged.size() + rejected == entries.size()) {
+            circuitBreaker.recordSuccess();
+            return null;
+        }
+        long minDelay = Math.max(0, uploader.getRetryAfterMillis());
+        if (uploader.isServerUnhealthy()) {
+            long now = System.currentTimeMillis();
+            minDelay = Math.max(minDelay, circuitBreaker.recordFailure(now, minDelay) - now);
+        }
+        return retryLater("Upload failed", minDelay);
+    }
+
+    private Result retryLater(String reason, long minDelayMillis) {
+        if (attempt >= MAX_RETRY_ATTEMPTS) {
+            // The checkpoint stays; the companion screen starts the chain again
+            Log.w(TAG, "Backfill stopped after " + attempt + " retries: " + reason);
+            return Result.failure();
+        }
+        long delay = Math.max(minDelayMillis,
+            SyncBackoff.fullJitterMillis(attempt, RETRY_BASE_MILLIS, RETRY_CAP_MILLIS, random));
+        Log.w(TAG, "Backfill retry in " + delay / 1000 + " s: " + reason);
+        return next(delay, attempt + 1);
+    }
+
+    private Result next(long delayMillis, int nextAttempt) {
+        SyncScheduler.scheduleBackfillChunk(getApplicationContext(), horizonDays, delayMillis, nextAttempt);
+        return Result.success();
+    }
+
+    // Fixed on the first run, so later links and restarts aim at the same day
+    private LocalDate loadHorizon(LocalDate today) {
+        String stored = credentialStore.getString(KEY_BACKFILL_HORIZON, null);
+        if (stored != null) {
+            return LocalDate.parse(stored);
+        }
+        LocalDate horizon = today.minusDays(horizonDays);
+        credentialStore.edit()
+            .putString(KEY_BACKFILL_HORIZON, horizon.toString())
+            .apply();
+        return horizon;
+    }
+
+    // Before the first chunk, the oldest day of the regular sync window
+    private LocalDate loadCursor(LocalDate today) {
+        String stored = credentialStore.getString(KEY_BACKFILL_CURSOR, null);
+        return stored != null ? LocalDate.parse(stored) : today.minusDays(HealthSyncService.SYNC_WINDOW_DAYS);
+    }
+}
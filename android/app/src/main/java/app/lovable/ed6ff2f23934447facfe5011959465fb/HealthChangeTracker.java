@@ -0,0 +1,177 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import android.util.Log;
+
+import androidx.health.connect.client.HealthConnectClient;
+import androidx.health.connect.client.changes.Change;
+import androidx.health.connect.client.changes.DeletionChange;
+import androidx.health.connect.client.changes.UpsertionChange;
+import androidx.health.connect.client.records.HeartRateRecord;
+import androidx.health.connect.client.records.IntervalRecord;
+import androidx.health.connect.client.records.Record;
+import androidx.health.connect.client.records.SleepSessionRecord;
+import androidx.health.connect.client.records.StepsRecord;
+import androidx.health.connect.client.records.TotalCaloriesBurnedRecord;
+import androidx.health.connect.client.records.metadata.DataOrigin;
+import androidx.health.connect.client.request.ChangesTokenRequest;
+import androidx.health.connect.client.response.ChangesResponse;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import kotlin.coroutines.EmptyCoroutineContext;
+import kotlin.jvm.JvmClassMappingKt;
+import kotlin.reflect.KClass;
+import kotlinx.coroutines.BuildersKt;
+
+// Tracks Health Connect changes tokens, one per record type, so a sync only
+// has to recompute the days that were written or deleted since the last run.
+public class HealthChangeTracker {
+    private static final String TAG = "HealthChangeTracker";
+
+    private static final Map<String, Class<? extends Record>> RECORD_TYPES = new LinkedHashMap<>();
+    static {
+        RECORD_TYPES.put("steps", StepsRecord.class);
+        RECORD_TYPES.put("heart_rate", HeartRateRecord.class);
+        RECORD_TYPES.put("sleep", SleepSessionRecord.class);
+        RECORD_TYPES.put("calories", TotalCaloriesBurnedRecord.class);
+    }
+
+    private final HealthConnectClient healthConnectClient;
+    private final HealthCredentialStore store;
+    private final String keyPrefix;
+
+    public HealthChangeTracker(HealthConnectClient healthConnectClient, HealthCredentialStore store, String keyPrefix) {
+        this.healthConnectClient = healthConnectClient;
+        this.store = store;
+        this.keyPrefix = keyPrefix;
+    }
+
+    // Reads all pending changes without advancing the stored tokens. Call
+    // commit() once the touched days have been handled.
+    public ChangeSet pollChanges() throws InterruptedException {
+        ChangeSet changeSet = new ChangeSet();
+        ZoneId zone = ZoneId.systemDefault();
+
+        for (Map.Entry<String, Class<? extends Record>> entry : RECORD_TYPES.entrySet()) {
+            String key = keyPrefix + entry.getKey();
+            String token = store.getString(key, null);
+
+            if (token == null) {
+                // First run for this type: take a token now and sync the full window
+                changeSet.fullWindow = true;
+                changeSet.nextTokens.put(key, newToken(entry.getValue()));
+                continue;
+            }
+
+            try {
+                String nextToken = readChanges(token, zone, changeSet);
+                if (nextToken == null) {
+                    Log.d(TAG, "Changes token expired for " + entry.getKey());
+                    changeSet.fullWindow = true;
+                    nextToken = newToken(entry.getValue());
+                }
+                changeSet.nextTokens.put(key, nextToken);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                Log.w(TAG, "Could not read changes for " + entry.getKey() + ", falling back to full window", e);
+                changeSet.fullWindow = true;
+                changeSet.nextTokens.put(key, newToken(entry.getValue()));
+            }
+        }
+
+        return changeSet;
+    }
+
+    public void commit(ChangeSet changeSet) {
+        HealthCredentialStore.Editor editor = store.edit();
+        for (Map.Entry<String, String> entry : changeSet.nextTokens.entrySet()) {
+            editor.putString(entry.getKey(), entry.getValue());
+        }
+        editor.apply();
+    }
+
+    // Returns the token to resume from, or null when the stored token has expired.
+    private String readChanges(String token, ZoneId zone, ChangeSet changeSet) throws InterruptedException {
+        String currentToken = token;
+        boolean hasMore = true;
+
+        while (hasMore) {
+            final String pageToken = currentToken;
+            ChangesResponse response = BuildersKt.runBlocking(
+                EmptyCoroutineContext.INSTANCE,
+                (scope, continuation) -> healthConnectClient.getChanges(pageToken, continuation)
+            );
+
+            if (response.getChangesTokenExpired()) {
+                return null;
+            }
+
+            for (Change change : response.getChanges()) {
+                if (change instanceof UpsertionChange) {
+                    addTouchedDays(((UpsertionChange) change).getRecord(), zone, changeSet);
+                } else if (change instanceof DeletionChange) {
+                    // Deletions only carry the record ID, so the affected day is unknown
+                    changeSet.fullWindow = true;
+                }
+            }
+
+            currentToken = response.getNextChangesToken();
+            hasMore = response.getHasMore();
+        }
+
+        return currentToken;
+    }
+
+    private static void addTouchedDays(Record record, ZoneId zone, ChangeSet changeSet) {
+        if (!(record instanceof IntervalRecord)) {
+            changeSet.fullWindow = true;
+            return;
+        }
+
+        IntervalRecord interval = (IntervalRecord) record;
+        LocalDate first = interval.getStartTime().atZone(zone).toLocalDate();
+        // End times are exclusive, so a record ending exactly at midnight stays on the earlier day
+        Instant lastInstant = interval.getEndTime().isAfter(interval.getStartTime())
+            ? interval.getEndTime().minusNanos(1)
+            : interval.getEndTime();
+        LocalDate last = lastInstant.atZone(zone).toLocalDate();
+
+        for (LocalDate date = first; !date.isAfter(last); date = date.plusDays(1)) {
+            changeSet.touchedDays.add(date);
+        }
+    }
+
+    private String newToken(Class<? extends Record> recordType) throws InterruptedException {
+        Set<KClass<? extends Record>> recordTypes = Collections.singleton(JvmClassMappingKt.getKotlinClass(recordType));
+        ChangesTokenRequest request = new ChangesTokenRequest(recordTypes, Collections.<DataOrigin>emptySet());
+
+        return BuildersKt.runBlocking(
+            EmptyCoroutineContext.INSTANCE,
+            (scope, continuation) -> healthConnectClient.getChangesToken(request, continuation)
+        );
+    }
+
+    public static class ChangeSet {
+        private boolean fullWindow;
+        private final SortedSet<LocalDate> touchedDays = new TreeSet<>();
+        private final Map<String, String> nextTokens = new HashMap<>();
+
+        public boolean requiresFullWindow() {
+            return fullWindow;
+        }
+
+        public SortedSet<LocalDate> getTouchedDays() {
+            return touchedDays;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package app.lovable.ed6ff2f23934447facfe5011959465fb;
 
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.View;
@@ -9,15 +8,14 @@ import android.widget.TextView;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.health.connect.client.HealthConnectClient;
-import androidx.security.crypto.EncryptedSharedPreferences;
-import androidx.security.crypto.MasterKey;
+import androidx.work.Data;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
 
 import org.json.JSONObject;
 
 import java.io.IOException;
-import java.security.GeneralSecurityException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.UUID;
 
 import okhttp3.Call;
@@ -30,18 +28,15 @@ import okhttp3.Response;
 
 public class HealthCompanionActivity extends AppCompatActivity {
     private static final String TAG = "HealthCompanionActivity";
-    private static final String PREFS_NAME = "health_sync_prefs";
-    private static final String KEY_DEVICE_ID = "device_id";
-    private static final String KEY_HMAC_SECRET = "hmac_secret";
-    private static final String KEY_JWT_TOKEN = "jwt_token";
-    private static final String KEY_LAST_SYNC = "last_sync_date";
-    private static final String KEY_DEVICE_REGISTERED = "device_registered";
-    
-    private static final String API_BASE_URL = "https://wehexulgoxwswkaoygnx.supabase.co/functions/v1";
     private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
     
+    // The app's Supabase session, put by HealthCompanionLauncherPlugin
+    public static final String EXTRA_JWT_TOKEN = "JWT_TOKEN";
+    public static final String EXTRA_REFRESH_TOKEN = "REFRESH_TOKEN";
+    
     private HealthConnectPlugin healthPlugin;
-    private SharedPreferences encryptedPrefs;
+    private HealthCredentialStore credentialStore;
+    private HealthTokenManager tokenManager;
     private OkHttpClient httpClient;
     
     private TextView statusText;
@@ -49,6 +44,10 @@ public class HealthCompanionActivity extends AppCompatActivity {
     private Button connectButton; 
     private Button syncButton;
     private Button settingsButton;
+    
+    private boolean manualSyncActive;
+    // Set by a tap here, so results of earlier syncs are not announced again
+    private boolean awaitingManualSync;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -57,7 +56,10 @@ public class HealthCompanionActivity extends AppCompatActivity {
         
         initializeViews();
         initializeServices();
-        updateUI();
+        
+        WorkManager.getInstance(this)
+            .getWorkInfosForUniqueWorkLiveData(SyncScheduler.WORK_MANUAL)
+            .observe(this, this::onManualSyncChanged);
     }
     
     private void initializeViews() {
@@ -75,30 +77,42 @@ public class HealthCompanionActivity extends AppCompatActivity {
     private void initializeServices() {
         this.healthPlugin = new HealthConnectPlugin();
         this.healthPlugin.load();
-        this.httpClient = new OkHttpClient();
+        this.httpClient = HealthHttpClient.get();
         
-        try {
-            MasterKey masterKey = new MasterKey.Builder(this)
-                .setKeyScheme(MasterKey.KeyScheme.AES256_GCM)
-                .build();
-                
-            this.encryptedPrefs = EncryptedSharedPreferences.create(
-                this,
-                PREFS_NAME,
-                masterKey,
-                EncryptedSharedPreferences.PrefKeyEncryptionScheme.AES256_SIV,
-                EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM
-            );
-        } catch (GeneralSecurityException | IOException e) {
-            Log.e(TAG, "Error creating encrypted preferences", e);
-            Toast.makeText(this, "Erro ao inicializar segurança", Toast.LENGTH_LONG).show();
-        }
+        // Open the connection while the user is still looking at the screen
+        HealthHttpClient.warmUp();
+        
+        // Encrypted prefs are opened off the main thread; buttons stay disabled until then
+        connectButton.setEnabled(false);
+        syncButton.setEnabled(false);
+        this.credentialStore = HealthCredentialStore.getInstance(this);
+        this.tokenManager = HealthTokenManager.getInstance(this);
+        credentialStore.whenReady(() -> {
+            if (isFinishing() || isDestroyed()) {
+                return;
+            }
+            if (!credentialStore.isPersistent()) {
+                Toast.makeText(this, "Erro ao inicializar segurança", Toast.LENGTH_LONG).show();
+            }
+            if (credentialStore.isDeviceRegistered()) {
+                // Each launch hands over the app's current session for the worker
+                String jwtToken = getIntent().getStringExtra(EXTRA_JWT_TOKEN);
+                if (jwtToken != null) {
+                    tokenManager.updateSession(jwtToken, getIntent().getStringExtra(EXTRA_REFRESH_TOKEN));
+                }
+                // No-op when already scheduled; restores the schedule after upgrades
+                SyncScheduler.schedulePeriodic(this, credentialStore.getDeviceId());
+                // Resumes a backfill chain that stopped, e.g. on an expired session
+                SyncScheduler.startBackfill(this, HealthBackfillWorker.DEFAULT_HORIZON_DAYS, false);
+            }
+            updateUI();
+        });
     }
     
     private void updateUI() {
         boolean isConnected = isHealthConnectAvailable() && hasHealthPermissions();
-        boolean isRegistered = encryptedPrefs.getBoolean(KEY_DEVICE_REGISTERED, false);
-        String lastSync = encryptedPrefs.getString(KEY_LAST_SYNC, null);
+        boolean isRegistered = credentialStore.isDeviceRegistered();
+        String lastSync = credentialStore.getString(HealthCredentialStore.KEY_LAST_SYNC, null);
         
         if (!isConnected) {
             statusText.setText("Health Connect não disponível ou sem permissões");
@@ -117,7 +131,7 @@ public class HealthCompanionActivity extends AppCompatActivity {
             statusText.setTextColor(getColor(android.R.color.holo_green_dark));
             connectButton.setText("Reconectar");
             connectButton.setEnabled(true);
-            syncButton.setEnabled(true);
+            syncButton.setEnabled(!manualSyncActive);
         }
         
         if (lastSync != null) {
@@ -134,7 +148,7 @@ public class HealthCompanionActivity extends AppCompatActivity {
     
     private boolean hasHealthPermissions() {
         // This would check actual permissions - simplified for demo
-        return encryptedPrefs.getBoolean("health_permissions_granted", false);
+        return credentialStore.getBoolean(HealthCredentialStore.KEY_HEALTH_PERMISSIONS_GRANTED, false);
     }
     
     private void requestHealthAccess() {
@@ -152,7 +166,7 @@ public class HealthCompanionActivity extends AppCompatActivity {
             public void onSuccess(boolean granted) {
                 runOnUiThread(() -> {
                     if (granted) {
-                        encryptedPrefs.edit().putBoolean("health_permissions_granted", true).apply();
+                        credentialStore.edit().putBoolean(HealthCredentialStore.KEY_HEALTH_PERMISSIONS_GRANTED, true).apply();
                         registerDevice();
                     } else {
                         Toast.makeText(HealthCompanionActivity.this, 
@@ -176,8 +190,9 @@ public class HealthCompanionActivity extends AppCompatActivity {
     }
     
     private void registerDevice() {
-        // Get JWT token from user (this would typically come from the main app)
-        String jwtToken = getJwtTokenFromUser();
+        // Handed over by the main app when it opened this screen
+        String jwtToken = getIntent().getStringExtra(EXTRA_JWT_TOKEN);
+        String refreshToken = getIntent().getStringExtra(EXTRA_REFRESH_TOKEN);
         if (jwtToken == null) {
             Toast.makeText(this, "Token JWT necessário. Por favor, faça login no app principal primeiro.", Toast.LENGTH_LONG).show();
             connectButton.setEnabled(true);
@@ -206,7 +221,7 @@ public class HealthCompanionActivity extends AppCompatActivity {
             
             RequestBody body = RequestBody.create(registrationData.toString(), JSON);
             Request request = new Request.Builder()
-                .url(API_BASE_URL + "/health-register-device")
+                .url(HealthHttpClient.API_BASE_URL + "/health-register-device")
                 .post(body)
                 .addHeader("Authorization", "Bearer " + jwtToken)
                 .addHeader("Content-Type", "application/json")
@@ -235,15 +250,19 @@ public class HealthCompanionActivity extends AppCompatActivity {
                                 String hmacSecret = result.getString("hmacSecret");
                                 
                                 // Store device registration securely
-                                encryptedPrefs.edit()
-                                    .putString(KEY_DEVICE_ID, deviceId)
-                                    .putString(KEY_HMAC_SECRET, hmacSecret)
-                                    .putString(KEY_JWT_TOKEN, jwtToken)
-                                    .putBoolean(KEY_DEVICE_REGISTERED, true)
+                                credentialStore.edit()
+                                    .putString(HealthCredentialStore.KEY_DEVICE_ID, deviceId)
+                                    .putString(HealthCredentialStore.KEY_HMAC_SECRET, hmacSecret)
+                                    .putBoolean(HealthCredentialStore.KEY_DEVICE_REGISTERED, true)
+                                    .remove(HealthBackfillWorker.KEY_BACKFILL_CURSOR)
+                                    .remove(HealthBackfillWorker.KEY_BACKFILL_HORIZON)
                                     .apply();
+                                tokenManager.updateSession(jwtToken, refreshToken);
                                 
-                                // Schedule automatic sync
-                                HealthSyncService.schedulePeriodicSync(HealthCompanionActivity.this);
+                                // Schedule automatic sync, and send the new device's history once
+                                SyncScheduler.schedulePeriodic(HealthCompanionActivity.this, deviceId);
+                                SyncScheduler.startBackfill(HealthCompanionActivity.this,
+                                    HealthBackfillWorker.DEFAULT_HORIZON_DAYS, true);
                                 
                                 Toast.makeText(HealthCompanionActivity.this, 
                                     "Dispositivo registrado com sucesso!", Toast.LENGTH_LONG).show();
@@ -277,24 +296,65 @@ public class HealthCompanionActivity extends AppCompatActivity {
     }
     
     private void performManualSync() {
+        awaitingManualSync = true;
         syncButton.setEnabled(false);
         syncButton.setText("Sincronizando...");
         
-        // Trigger immediate sync
-        HealthSyncService.performImmediateSync(this);
+        // Completion arrives through onManualSyncChanged
+        SyncScheduler.requestManualSync(this);
+    }
+    
+    private void onManualSyncChanged(List<WorkInfo> workInfos) {
+        if (workInfos == null || workInfos.isEmpty()) {
+            return;
+        }
+        WorkInfo info = workInfos.get(0);
+        
+        if (!info.getState().isFinished()) {
+            manualSyncActive = true;
+            syncButton.setEnabled(false);
+            syncButton.setText(progressLabel(info));
+            return;
+        }
         
-        // Simulate sync completion (in practice, you'd listen for sync completion)
-        syncButton.postDelayed(() -> {
-            encryptedPrefs.edit()
-                .putString(KEY_LAST_SYNC, LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")))
-                .apply();
-            
+        manualSyncActive = false;
+        syncButton.setText("Sincronizar Agora");
+        if (credentialStore.isDeviceRegistered()) {
             syncButton.setEnabled(true);
-            syncButton.setText("Sincronizar Agora");
-            updateUI();
-            
-            Toast.makeText(this, "Sincronização solicitada", Toast.LENGTH_SHORT).show();
-        }, 2000);
+        }
+        if (!awaitingManualSync) {
+            return;
+        }
+        awaitingManualSync = false;
+        
+        if (info.getState() == WorkInfo.State.SUCCEEDED
+                && HealthSyncService.PHASE_RETRY_SCHEDULED.equals(info.getOutputData().getString(HealthSyncService.PROGRESS_PHASE))) {
+            // Days stay queued and go out with the scheduled retry
+            Toast.makeText(this, "Servidor indisponível, nova tentativa agendada", Toast.LENGTH_LONG).show();
+        } else if (info.getState() == WorkInfo.State.SUCCEEDED) {
+            int days = info.getOutputData().getInt(HealthSyncService.PROGRESS_DAYS_UPLOADED, 0);
+            Toast.makeText(this, "Sincronização concluída (" + days + " dias enviados)", Toast.LENGTH_SHORT).show();
+        } else if (info.getState() == WorkInfo.State.FAILED) {
+            String error = info.getOutputData().getString(HealthSyncService.PROGRESS_ERROR);
+            Toast.makeText(this, "Falha na sincronização" + (error != null ? ": " + error : ""), Toast.LENGTH_LONG).show();
+        }
+        updateUI();
+    }
+    
+    private static String progressLabel(WorkInfo info) {
+        if (info.getState() == WorkInfo.State.ENQUEUED) {
+            // Also the state between retries
+            return info.getRunAttemptCount() > 0 ? "Aguardando nova tentativa..." : "Aguardando conexão...";
+        }
+        Data progress = info.getProgress();
+        String phase = progress.getString(HealthSyncService.PROGRESS_PHASE);
+        if (HealthSyncService.PHASE_COLLECTING.equals(phase)) {
+            return "Coletando dados...";
+        }
+        if (HealthSyncService.PHASE_UPLOADING.equals(phase)) {
+            return "Enviando... " + progress.getInt(HealthSyncService.PROGRESS_DAYS_UPLOADED, 0) + " dias";
+        }
+        return "Sincronizando...";
     }
     
     private void openSettings() {
@@ -302,17 +362,6 @@ public class HealthCompanionActivity extends AppCompatActivity {
         Toast.makeText(this, "Configurações (não implementado nesta demo)", Toast.LENGTH_SHORT).show();
     }
     
-    private String getJwtTokenFromUser() {
-        // In a real implementation, this would:
-        // 1. Check if the main app is installed
-        // 2. Get the JWT token from the main app via intent or shared storage
-        // 3. Or prompt user to login
-        
-        // For demo purposes, return a placeholder
-        // In production, you'd implement proper token exchange
-        return "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9.demo_token_replace_with_real";
-    }
-    
     // Interface for permission callbacks
     public interface PermissionCallback {
         void onSuccess(boolean granted);
@@ -7,13 +7,38 @@ import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
 import com.getcapacitor.JSObject;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 @CapacitorPlugin(name = "HealthCompanionLauncher")
 public class HealthCompanionLauncherPlugin extends Plugin {
+    private static final long CREDENTIALS_TIMEOUT_SECONDS = 10;
+
+    // Session calls wait for the credential store and may wait behind a refresh
+    // in flight, so they run off the bridge thread, one at a time and in order.
+    private final ExecutorService sessionExecutor = Executors.newSingleThreadExecutor();
+    private HealthCredentialStore credentialStore;
+    private HealthTokenManager tokenManager;
+
+    @Override
+    public void load() {
+        credentialStore = HealthCredentialStore.getInstance(getContext());
+        tokenManager = HealthTokenManager.getInstance(getContext());
+        // The worker rotated the shared session; the web app has to switch to the
+        // new pair. Adopting it comes back through updateSession, which settles it;
+        // with nobody listening it waits for takeRefreshedSession.
+        tokenManager.setSessionListener(session -> {
+            if (hasListeners("sessionRefreshed")) {
+                notifyListeners("sessionRefreshed", toJson(session));
+            }
+        });
+    }
 
     @PluginMethod
     public void launch(PluginCall call) {
         String jwtToken = call.getString("jwtToken");
-        
+
         if (jwtToken == null || jwtToken.isEmpty()) {
             JSObject ret = new JSObject();
             ret.put("success", false);
@@ -23,7 +48,8 @@ public class HealthCompanionLauncherPlugin extends Plugin {
 
         try {
             Intent intent = new Intent(getContext(), HealthCompanionActivity.class);
-            intent.putExtra("JWT_TOKEN", jwtToken);
+            intent.putExtra(HealthCompanionActivity.EXTRA_JWT_TOKEN, jwtToken);
+            intent.putExtra(HealthCompanionActivity.EXTRA_REFRESH_TOKEN, call.getString("refreshToken"));
             intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
             getContext().startActivity(intent);
 
@@ -36,4 +62,67 @@ public class HealthCompanionLauncherPlugin extends Plugin {
             call.resolve(ret);
         }
     }
-}
\ No newline at end of file
+
+    // Called by the web app whenever Supabase signs in or refreshes, so the
+    // worker never holds a refresh token that was already rotated away.
+    @PluginMethod
+    public void updateSession(PluginCall call) {
+        String accessToken = call.getString("accessToken");
+        if (accessToken == null || accessToken.isEmpty()) {
+            call.reject("accessToken is required");
+            return;
+        }
+        String refreshToken = call.getString("refreshToken");
+        whenStoreReady(call, () -> {
+            tokenManager.updateSession(accessToken, refreshToken);
+            call.resolve();
+        });
+    }
+
+    @PluginMethod
+    public void clearSession(PluginCall call) {
+        whenStoreReady(call, () -> {
+            tokenManager.clearSession();
+            call.resolve();
+        });
+    }
+
+    // A session the worker refreshed while the web app was closed; empty otherwise.
+    // Called at cold start, so before the store is loaded the flag would read false
+    // and the rotated pair would be lost.
+    @PluginMethod
+    public void takeRefreshedSession(PluginCall call) {
+        whenStoreReady(call, () -> {
+            HealthTokenManager.Session session = tokenManager.takeRefreshedSession();
+            call.resolve(session != null ? toJson(session) : new JSObject());
+        });
+    }
+
+    private void whenStoreReady(PluginCall call, Runnable action) {
+        sessionExecutor.execute(() -> {
+            try {
+                if (!credentialStore.awaitReady(CREDENTIALS_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    call.reject("Credential store not ready");
+                    return;
+                }
+                action.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                call.reject("Interrupted");
+            }
+        });
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        // Let queued hand-overs finish; dropping one could strand a rotated session
+        sessionExecutor.shutdown();
+    }
+
+    private static JSObject toJson(HealthTokenManager.Session session) {
+        JSObject ret = new JSObject();
+        ret.put("accessToken", session.accessToken);
+        ret.put("refreshToken", session.refreshToken);
+        return ret;
+    }
+}
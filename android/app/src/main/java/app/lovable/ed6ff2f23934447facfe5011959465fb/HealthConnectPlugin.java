@@ -2,11 +2,15 @@ package app.lovable.ed6ff2f23934447facfe5011959465fb;
 
 import android.content.Context;
 import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import androidx.health.connect.client.HealthConnectClient;
 import androidx.health.connect.client.PermissionController;
 import androidx.health.connect.client.permission.HealthPermission;
+import androidx.health.connect.client.records.ExerciseSessionRecord;
 import androidx.health.connect.client.records.Record;
 import androidx.health.connect.client.records.StepsRecord;
 import androidx.health.connect.client.records.HeartRateRecord;
@@ -15,6 +19,11 @@ import androidx.health.connect.client.records.TotalCaloriesBurnedRecord;
 import androidx.health.connect.client.request.ReadRecordsRequest;
 import androidx.health.connect.client.response.ReadRecordsResponse;
 import androidx.health.connect.client.time.TimeRangeFilter;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.work.Data;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
 
 import java.time.*;
 import java.util.Set;
@@ -28,20 +37,72 @@ import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+import kotlin.coroutines.EmptyCoroutineContext;
+import kotlinx.coroutines.BuildersKt;
 
 @CapacitorPlugin(name = "HealthConnect")
 public class HealthConnectPlugin extends Plugin {
 
     private static final String TAG = "HealthConnectPlugin";
+    private static final int DEFAULT_STREAM_CHUNK_DAYS = 14;
+    private static final String EVENT_HEALTH_DATA_CHUNK = "healthDataChunk";
+    private static final String EVENT_HEALTH_DATA_COMPLETE = "healthDataComplete";
+    private static final String EVENT_SYNC_PROGRESS = "syncProgress";
+    private static final int DEFAULT_METRICS_LIMIT = 50;
+    private static final String KEY_CACHE_CHANGES_TOKEN_PREFIX = "cache_changes_token_";
+    private static final long CACHE_VALIDATION_INTERVAL_MILLIS = 30 * 1000;
+    private static final long CREDENTIALS_TIMEOUT_SECONDS = 5;
+    private static final long MIN_QUOTA_WAIT_MILLIS = 1000;
+    private static final int MAX_CONCURRENT_DATA_CALLS = 4;
+    
     private HealthConnectClient healthConnectClient;
+    private HealthDataCollector healthDataCollector;
+    private HealthCredentialStore credentialStore;
+    private DayAggregateCache dayCache;
+    private HealthReadQuota readQuota;
+    private long lastCacheValidation;
     private PluginCall pendingPermissionCall;
+    
+    private final ExecutorService collectionExecutor = Executors.newSingleThreadExecutor();
+    // getHealthData runs here, off the bridge thread, so overlapping calls can share reads
+    private final ExecutorService dataCallExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT_DATA_CALLS);
+    // One per origin priority, since the same day reads differently under each
+    private final Map<List<String>, SingleFlight<LocalDate, HealthDataCollector.PlannedRead>> dayReads = new ConcurrentHashMap<>();
+    private final Map<String, Future<?>> healthDataStreams = new ConcurrentHashMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Registered and removed on the main thread
+    private final Observer<List<WorkInfo>> manualSyncObserver = infos -> notifySyncProgress("manual", infos);
+    private final Observer<List<WorkInfo>> periodicSyncObserver = infos -> notifySyncProgress("periodic", infos);
+    private final Observer<List<WorkInfo>> retrySyncObserver = infos -> notifySyncProgress("retry", infos);
+    private LiveData<List<WorkInfo>> manualSyncInfo;
+    private LiveData<List<WorkInfo>> periodicSyncInfo;
+    private LiveData<List<WorkInfo>> retrySyncInfo;
 
     private static final Set<String> PERMISSIONS = Set.of(
             HealthPermission.getReadPermission(StepsRecord.class),
@@ -50,6 +111,12 @@ public class HealthConnectPlugin extends Plugin {
             HealthPermission.getReadPermission(TotalCaloriesBurnedRecord.class)
     );
 
+    // Requested together with PERMISSIONS, but only writeWorkouts needs them
+    private static final Set<String> WRITE_PERMISSIONS = Set.of(
+            HealthPermission.getWritePermission(ExerciseSessionRecord.class),
+            HealthPermission.getWritePermission(TotalCaloriesBurnedRecord.class)
+    );
+
     @Override
     public void load() {
         super.load();
@@ -57,7 +124,181 @@ public class HealthConnectPlugin extends Plugin {
         
         if (HealthConnectClient.getSdkStatus(context) == HealthConnectClient.SDK_AVAILABLE) {
             healthConnectClient = HealthConnectClient.getOrCreate(context);
+            healthDataCollector = new HealthDataCollector(healthConnectClient);
+            credentialStore = HealthCredentialStore.getInstance(context);
+            dayCache = new DayAggregateCache(context);
+            readQuota = HealthReadQuota.foreground(context);
+        }
+        
+        mainHandler.post(this::observeSyncWork);
+    }
+
+    // Forwards WorkManager progress of the sync jobs as syncProgress events
+    private void observeSyncWork() {
+        WorkManager workManager = WorkManager.getInstance(getContext());
+        manualSyncInfo = workManager.getWorkInfosForUniqueWorkLiveData(SyncScheduler.WORK_MANUAL);
+        periodicSyncInfo = workManager.getWorkInfosForUniqueWorkLiveData(SyncScheduler.WORK_PERIODIC);
+        retrySyncInfo = workManager.getWorkInfosForUniqueWorkLiveData(SyncScheduler.WORK_RETRY);
+        manualSyncInfo.observeForever(manualSyncObserver);
+        periodicSyncInfo.observeForever(periodicSyncObserver);
+        retrySyncInfo.observeForever(retrySyncObserver);
+    }
+
+    private void notifySyncProgress(String job, List<WorkInfo> infos) {
+        if (infos != null && !infos.isEmpty()) {
+            notifyListeners(EVENT_SYNC_PROGRESS, toSyncStatus(job, current(infos)));
+        }
+    }
+
+    // Retries append to their unique work, so finished runs can sit next to the pending one
+    private static WorkInfo current(List<WorkInfo> infos) {
+        for (WorkInfo info : infos) {
+            if (!info.getState().isFinished()) {
+                return info;
+            }
+        }
+        return infos.get(0);
+    }
+
+    @PluginMethod
+    public void requestSync(PluginCall call) {
+        SyncScheduler.requestManualSync(getContext());
+        
+        // Progress and the result arrive through syncProgress events
+        JSObject ret = new JSObject();
+        ret.put("requested", true);
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void getSyncStatus(PluginCall call) {
+        try {
+            WorkManager workManager = WorkManager.getInstance(getContext());
+            List<WorkInfo> manual = workManager.getWorkInfosForUniqueWork(SyncScheduler.WORK_MANUAL).get();
+            List<WorkInfo> periodic = workManager.getWorkInfosForUniqueWork(SyncScheduler.WORK_PERIODIC).get();
+            List<WorkInfo> retry = workManager.getWorkInfosForUniqueWork(SyncScheduler.WORK_RETRY).get();
+            
+            JSObject ret = new JSObject();
+            if (!manual.isEmpty()) {
+                ret.put("manual", toSyncStatus("manual", manual.get(0)));
+            }
+            if (!periodic.isEmpty()) {
+                ret.put("periodic", toSyncStatus("periodic", periodic.get(0)));
+            }
+            if (!retry.isEmpty()) {
+                ret.put("retry", toSyncStatus("retry", current(retry)));
+            }
+            call.resolve(ret);
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading sync status", e);
+            call.reject("Error reading sync status: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void getSyncMetrics(PluginCall call) {
+        int limit = Math.max(1, call.getInt("limit", DEFAULT_METRICS_LIMIT));
+        List<SyncMetrics> runs = SyncMetricsLog.getInstance(getContext()).read(limit);
+        
+        JSArray runArray = new JSArray();
+        int succeeded = 0;
+        for (SyncMetrics run : runs) {
+            runArray.put(toMetricsData(run));
+            if (run.outcome == SyncMetrics.OUTCOME_SUCCESS) {
+                succeeded++;
+            }
+        }
+        
+        JSObject summary = new JSObject();
+        summary.put("runs", runs.size());
+        summary.put("successRate", runs.isEmpty() ? 0 : (double) succeeded / runs.size());
+        summary.put("totalMillis", percentiles(runs, run -> run.totalMillis));
+        summary.put("credentialMillis", percentiles(runs, run -> run.credentialMillis));
+        summary.put("changesMillis", percentiles(runs, run -> run.changesMillis));
+        summary.put("aggregateMillis", percentiles(runs, run -> run.aggregateMillis));
+        summary.put("heartRateMillis", percentiles(runs, run -> run.heartRateMillis));
+        summary.put("signMillis", percentiles(runs, run -> run.signMillis));
+        summary.put("httpMillis", percentiles(runs, run -> run.httpMillis));
+        summary.put("httpMaxMillis", percentiles(runs, run -> run.httpMaxMillis));
+        summary.put("bytesSent", percentiles(runs, run -> run.bytesSent));
+        
+        // Lets admin screens group slow syncs by phone
+        JSObject device = new JSObject();
+        device.put("manufacturer", Build.MANUFACTURER);
+        device.put("model", Build.MODEL);
+        device.put("sdkInt", Build.VERSION.SDK_INT);
+        
+        JSObject ret = new JSObject();
+        ret.put("device", device);
+        ret.put("summary", summary);
+        ret.put("runs", runArray);
+        call.resolve(ret);
+    }
+
+    private static JSObject toMetricsData(SyncMetrics run) {
+        JSObject data = new JSObject();
+        data.put("startedAt", Instant.ofEpochMilli(run.startedAt).toString());
+        data.put("attempt", run.attempt);
+        data.put("outcome", run.outcome == SyncMetrics.OUTCOME_SUCCESS ? "success"
+            : run.outcome == SyncMetrics.OUTCOME_RETRY ? "retry" : "failure");
+        data.put("totalMillis", run.totalMillis);
+        data.put("credentialMillis", run.credentialMillis);
+        data.put("changesMillis", run.changesMillis);
+        data.put("aggregateMillis", run.aggregateMillis);
+        data.put("heartRateMillis", run.heartRateMillis);
+        data.put("outboxMillis", run.outboxMillis);
+        data.put("signMillis", run.signMillis);
+        data.put("httpMillis", run.httpMillis);
+        data.put("httpMaxMillis", run.httpMaxMillis);
+        data.put("batches", run.batches);
+        data.put("failedBatches", run.failedBatches);
+        data.put("bytesSent", run.bytesSent);
+        data.put("daysUploaded", run.daysUploaded);
+        return data;
+    }
+
+    // Nearest-rank p50 and p95
+    private static JSObject percentiles(List<SyncMetrics> runs, ToLongFunction<SyncMetrics> field) {
+        JSObject result = new JSObject();
+        if (runs.isEmpty()) {
+            return result;
+        }
+        long[] values = new long[runs.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = field.applyAsLong(runs.get(i));
+        }
+        Arrays.sort(values);
+        result.put("p50", values[(int) Math.ceil(0.50 * values.length) - 1]);
+        result.put("p95", values[(int) Math.ceil(0.95 * values.length) - 1]);
+        return result;
+    }
+
+    private static JSObject toSyncStatus(String job, WorkInfo info) {
+        // Finished work reports its output, running work its latest progress
+        Data data = info.getState().isFinished() ? info.getOutputData() : info.getProgress();
+        
+        JSObject status = new JSObject();
+        status.put("job", job);
+        status.put("state", info.getState().name());
+        status.put("attempt", info.getRunAttemptCount());
+        String phase = data.getString(HealthSyncService.PROGRESS_PHASE);
+        if (phase != null) {
+            status.put("phase", phase);
+            status.put("daysCollected", data.getInt(HealthSyncService.PROGRESS_DAYS_COLLECTED, 0));
+            status.put("daysUploaded", data.getInt(HealthSyncService.PROGRESS_DAYS_UPLOADED, 0));
+            status.put("bytesSent", data.getLong(HealthSyncService.PROGRESS_BYTES_SENT, 0));
+            status.put("collectMillis", data.getLong(HealthSyncService.PROGRESS_COLLECT_MILLIS, 0));
+            status.put("uploadMillis", data.getLong(HealthSyncService.PROGRESS_UPLOAD_MILLIS, 0));
+        }
+        String error = data.getString(HealthSyncService.PROGRESS_ERROR);
+        if (error != null) {
+            status.put("error", error);
+        }
+        long nextRetryAt = data.getLong(HealthSyncService.PROGRESS_NEXT_RETRY_AT, 0);
+        if (nextRetryAt > 0) {
+            status.put("nextRetryAt", Instant.ofEpochMilli(nextRetryAt).toString());
         }
+        return status;
     }
 
     @PluginMethod
@@ -84,6 +325,7 @@ public class HealthConnectPlugin extends Plugin {
                 boolean granted = grantedPermissions.containsAll(PERMISSIONS);
                 JSObject result = new JSObject();
                 result.put("granted", granted);
+                result.put("writeGranted", grantedPermissions.containsAll(WRITE_PERMISSIONS));
                 call.resolve(result);
             }).addOnFailureListener(exception -> {
                 Log.e(TAG, "Failed to check permissions", exception);
@@ -110,8 +352,10 @@ public class HealthConnectPlugin extends Plugin {
             }
 
             // Create permission request intent
+            Set<String> permissions = new HashSet<>(PERMISSIONS);
+            permissions.addAll(WRITE_PERMISSIONS);
             Intent intent = PermissionController.createRequestPermissionResultContract()
-                .createIntent(getContext(), PERMISSIONS);
+                .createIntent(getContext(), permissions);
             
             // Store the call for later resolution
             this.pendingPermissionCall = call;
@@ -150,22 +394,41 @@ public class HealthConnectPlugin extends Plugin {
             return;
         }
         
+        LocalDate startDate;
+        LocalDate endDate;
+        List<String> originPriority;
+        try {
+            startDate = LocalDate.parse(startDateStr);
+            endDate = LocalDate.parse(endDateStr);
+            originPriority = getOriginPriority(call);
+        } catch (Exception e) {
+            call.reject("Invalid request: " + e.getMessage());
+            return;
+        }
+        
+        dataCallExecutor.execute(() -> resolveHealthData(call, startDate, endDate, originPriority));
+    }
+    
+    private void resolveHealthData(PluginCall call, LocalDate startDate, LocalDate endDate, List<String> originPriority) {
         try {
-            LocalDate startDate = LocalDate.parse(startDateStr);
-            LocalDate endDate = LocalDate.parse(endDateStr);
-            
             JSArray healthDataArray = new JSArray();
             
-            // Process each day in the range
-            for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
-                JSObject dayData = collectDayData(date);
-                if (dayData != null) {
-                    healthDataArray.put(dayData);
-                }
+            HealthDataCollector.PlannedRead read = collect(dateRange(startDate, endDate), originPriority);
+            for (DayAggregate day : read.days) {
+                healthDataArray.put(toDayData(day));
             }
             
             JSObject ret = new JSObject();
             ret.put("data", healthDataArray);
+            if (!read.deferred.isEmpty()) {
+                // Over the read quota: the caller asks again for these after retryAfterMs
+                JSArray deferredDays = new JSArray();
+                for (LocalDate date : read.deferred) {
+                    deferredDays.put(date.toString());
+                }
+                ret.put("deferredDays", deferredDays);
+                ret.put("retryAfterMs", read.retryAfterMillis);
+            }
             call.resolve(ret);
             
         } catch (Exception e) {
@@ -174,29 +437,350 @@ public class HealthConnectPlugin extends Plugin {
         }
     }
 
-    private JSObject collectDayData(LocalDate date) {
-        try {
-            Instant startTime = date.atStartOfDay(ZoneId.systemDefault()).toInstant();
-            Instant endTime = date.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant();
-            
-            JSObject dayData = new JSObject();
-            dayData.put("date", date.toString());
-            
-            // For now, return mock data since actual Health Connect integration requires more setup
-            // In production, you would use the real Health Connect queries here
-            dayData.put("steps", (int) (Math.random() * 10000) + 5000);
-            dayData.put("heartRate", (int) (Math.random() * 40) + 60);
-            dayData.put("sleepHours", Math.round((Math.random() * 4 + 6) * 10.0) / 10.0);
-            dayData.put("calories", (int) (Math.random() * 800) + 1200);
+    // With an origin priority the days are recomputed from raw records, which
+    // the cache does not hold; otherwise cached days are served directly and
+    // the rest are read. Reads spend the foreground quota with the requested
+    // range as the visible one, days it cannot cover come back deferred.
+    //
+    // Days another call or stream is already reading are not read again: this
+    // call waits for that read and takes its share of the result.
+    private HealthDataCollector.PlannedRead collect(SortedSet<LocalDate> dates, List<String> originPriority) throws Exception {
+        SingleFlight<LocalDate, HealthDataCollector.PlannedRead> flight =
+            dayReads.computeIfAbsent(originPriority, priority -> new SingleFlight<>());
+        Map<HealthDataCollector.PlannedRead, SortedSet<LocalDate>> reads = flight.join(dates, claimed -> {
+            if (!originPriority.isEmpty()) {
+                return healthDataCollector.collectPlanned(claimed, claimed.first(), claimed.last(), originPriority, readQuota);
+            }
+            return collectCached(claimed);
+        });
+        
+        List<DayAggregate> days = new ArrayList<>();
+        SortedSet<LocalDate> deferred = new TreeSet<>();
+        long retryAfterMillis = 0;
+        for (Map.Entry<HealthDataCollector.PlannedRead, SortedSet<LocalDate>> entry : reads.entrySet()) {
+            HealthDataCollector.PlannedRead read = entry.getKey();
+            SortedSet<LocalDate> covered = entry.getValue();
+            // A shared read may hold days this call did not ask for
+            for (DayAggregate day : read.days) {
+                if (covered.contains(day.date)) {
+                    days.add(day);
+                }
+            }
+            for (LocalDate date : read.deferred) {
+                if (covered.contains(date)) {
+                    deferred.add(date);
+                    retryAfterMillis = Math.max(retryAfterMillis, read.retryAfterMillis);
+                }
+            }
+        }
+        days.sort((a, b) -> a.date.compareTo(b.date));
+        return new HealthDataCollector.PlannedRead(days, deferred, retryAfterMillis);
+    }
+
+    private static SortedSet<LocalDate> dateRange(LocalDate startDate, LocalDate endDate) {
+        SortedSet<LocalDate> dates = new TreeSet<>();
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            dates.add(date);
+        }
+        return dates;
+    }
+
+    private static List<String> getOriginPriority(PluginCall call) throws JSONException {
+        JSArray origins = call.getArray("originPriority");
+        return origins == null ? Collections.<String>emptyList() : origins.<String>toList();
+    }
+
+    // Runs concurrently for disjoint days, see collect(). Invalidation is not
+    // partitioned by day, so puts are tied to the cache generation seen before
+    // reading and are dropped if another call invalidated in the meantime.
+    private HealthDataCollector.PlannedRead collectCached(SortedSet<LocalDate> dates) throws Exception {
+        ZoneId zone = ZoneId.systemDefault();
+        invalidateChangedDays(zone);
+        long generation = dayCache.generation();
+        
+        Map<LocalDate, DayAggregate> found = new HashMap<>();
+        SortedSet<LocalDate> missing = new TreeSet<>();
+        for (LocalDate date : dates) {
+            DayAggregate cached = dayCache.get(date, zone);
+            if (cached != null) {
+                found.put(date, cached);
+            } else {
+                missing.add(date);
+            }
+        }
+        
+        SortedSet<LocalDate> deferred = Collections.emptySortedSet();
+        long retryAfterMillis = 0;
+        if (!missing.isEmpty()) {
+            HealthDataCollector.PlannedRead read = healthDataCollector.collectPlanned(missing, dates.first(), dates.last(),
+                Collections.<String>emptyList(), readQuota);
+            deferred = read.deferred;
+            retryAfterMillis = read.retryAfterMillis;
             
-            return dayData;
+            Map<LocalDate, DayAggregate> collected = new HashMap<>();
+            for (DayAggregate day : read.days) {
+                collected.put(day.date, day);
+            }
+            // Days without data are cached as empty so they are not queried again
+            for (LocalDate date : missing) {
+                if (deferred.contains(date)) {
+                    continue;
+                }
+                DayAggregate day = collected.get(date);
+                if (day == null) {
+                    day = new DayAggregate(date, null, null, null, null, null, null);
+                }
+                // Still this call's answer when it is too late to cache
+                dayCache.put(day, zone, generation);
+                found.put(date, day);
+            }
+        }
+        
+        List<DayAggregate> days = new ArrayList<>();
+        for (LocalDate date : dates) {
+            DayAggregate day = found.get(date);
+            if (day != null && !day.isEmpty()) {
+                days.add(day);
+            }
+        }
+        return new HealthDataCollector.PlannedRead(days, deferred, retryAfterMillis);
+    }
+
+    // Drops cached days Health Connect reports as changed. Polled at most every 30 seconds.
+    private synchronized void invalidateChangedDays(ZoneId zone) throws InterruptedException {
+        long now = System.currentTimeMillis();
+        if (now - lastCacheValidation < CACHE_VALIDATION_INTERVAL_MILLIS) {
+            return;
+        }
+        
+        if (!credentialStore.awaitReady(CREDENTIALS_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            // Without our tokens nothing cached can be trusted
+            dayCache.clear();
+            return;
+        }
+        
+        HealthChangeTracker changeTracker = new HealthChangeTracker(healthConnectClient, credentialStore, KEY_CACHE_CHANGES_TOKEN_PREFIX);
+        HealthChangeTracker.ChangeSet changes = changeTracker.pollChanges();
+        if (changes.requiresFullWindow()) {
+            dayCache.clear();
+        } else {
+            for (LocalDate date : changes.getTouchedDays()) {
+                dayCache.invalidate(date, zone);
+            }
+        }
+        changeTracker.commit(changes);
+        lastCacheValidation = now;
+    }
+
+    @PluginMethod
+    public void writeWorkouts(PluginCall call) {
+        if (healthConnectClient == null) {
+            call.reject("Health Connect not available");
+            return;
+        }
+        
+        List<WorkoutWriter.Workout> workouts;
+        try {
+            workouts = parseWorkouts(call.getArray("workouts"));
+        } catch (Exception e) {
+            call.reject("Invalid workouts: " + e.getMessage());
+            return;
+        }
+        
+        dataCallExecutor.execute(() -> {
+            try {
+                Set<String> granted = BuildersKt.runBlocking(
+                    EmptyCoroutineContext.INSTANCE,
+                    (scope, continuation) -> healthConnectClient.getPermissionController().getGrantedPermissions(continuation)
+                );
+                if (!granted.containsAll(WRITE_PERMISSIONS)) {
+                    call.reject("Health Connect write permissions not granted");
+                    return;
+                }
+                
+                WorkoutWriter.WriteResult result = new WorkoutWriter(healthConnectClient).write(workouts);
+                JSObject ret = new JSObject();
+                ret.put("written", result.written);
+                ret.put("failed", new JSArray(result.failed));
+                call.resolve(ret);
+            } catch (Exception e) {
+                Log.e(TAG, "Error writing workouts", e);
+                call.reject("Error writing workouts: " + e.getMessage());
+            }
+        });
+    }
+    
+    private static List<WorkoutWriter.Workout> parseWorkouts(JSArray array) throws JSONException {
+        if (array == null) {
+            throw new JSONException("workouts is required");
+        }
+        List<WorkoutWriter.Workout> workouts = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject workout = array.getJSONObject(i);
+            Instant startTime = Instant.parse(workout.getString("startTime"));
+            Instant endTime = Instant.parse(workout.getString("endTime"));
+            if (!endTime.isAfter(startTime)) {
+                throw new JSONException("workout " + workout.getString("id") + " ends before it starts");
+            }
+            workouts.add(new WorkoutWriter.Workout(
+                workout.getString("id"),
+                startTime,
+                endTime,
+                workout.optInt("exerciseType", ExerciseSessionRecord.EXERCISE_TYPE_OTHER_WORKOUT),
+                workout.isNull("title") ? null : workout.getString("title"),
+                workout.isNull("notes") ? null : workout.getString("notes"),
+                workout.isNull("calories") ? null : workout.getDouble("calories"),
+                workout.isNull("updatedAt") ? 0 : Instant.parse(workout.getString("updatedAt")).toEpochMilli()
+            ));
+        }
+        return workouts;
+    }
+
+    private JSObject toDayData(DayAggregate day) {
+        JSObject dayData = new JSObject();
+        dayData.put("date", day.date.toString());
+        
+        if (day.steps != null) {
+            dayData.put("steps", day.steps);
+        }
+        if (day.heartRateAvg != null) {
+            dayData.put("heartRate", day.heartRateAvg);
+            dayData.put("heartRateMin", day.heartRateMin);
+            dayData.put("heartRateMax", day.heartRateMax);
+        }
+        if (day.sleepHours != null) {
+            dayData.put("sleepHours", day.sleepHours);
+        }
+        if (day.calories != null) {
+            dayData.put("calories", day.calories);
+        }
+        
+        return dayData;
+    }
+
+    @PluginMethod
+    public void streamHealthData(PluginCall call) {
+        String startDateStr = call.getString("startDate");
+        String endDateStr = call.getString("endDate");
+        int chunkDays = Math.max(1, call.getInt("chunkDays", DEFAULT_STREAM_CHUNK_DAYS));
+        List<String> originPriority;
+        
+        if (healthConnectClient == null) {
+            call.reject("Health Connect not available");
+            return;
+        }
+        
+        LocalDate startDate;
+        LocalDate endDate;
+        try {
+            startDate = LocalDate.parse(startDateStr);
+            endDate = LocalDate.parse(endDateStr);
+            originPriority = getOriginPriority(call);
+        } catch (Exception e) {
+            call.reject("Invalid request: " + e.getMessage());
+            return;
+        }
+        
+        String streamId = UUID.randomUUID().toString();
+        FutureTask<Void> stream = new FutureTask<>(() -> runHealthDataStream(streamId, startDate, endDate, chunkDays, originPriority), null);
+        healthDataStreams.put(streamId, stream);
+        collectionExecutor.execute(stream);
+        
+        // Days arrive through healthDataChunk events, then one healthDataComplete
+        JSObject ret = new JSObject();
+        ret.put("streamId", streamId);
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void cancelHealthDataStream(PluginCall call) {
+        String streamId = call.getString("streamId", "");
+        // Whoever removes the stream entry sends its completion event
+        Future<?> stream = healthDataStreams.remove(streamId);
+        if (stream != null) {
+            stream.cancel(true);
             
+            JSObject completion = new JSObject();
+            completion.put("streamId", streamId);
+            completion.put("cancelled", true);
+            notifyListeners(EVENT_HEALTH_DATA_COMPLETE, completion);
+        }
+        
+        JSObject ret = new JSObject();
+        ret.put("cancelled", stream != null);
+        call.resolve(ret);
+    }
+
+    private void runHealthDataStream(String streamId, LocalDate startDate, LocalDate endDate, int chunkDays,
+                                     List<String> originPriority) {
+        JSObject completion = new JSObject();
+        completion.put("streamId", streamId);
+        int chunkIndex = 0;
+        
+        try {
+            for (LocalDate chunkStart = startDate; !chunkStart.isAfter(endDate); chunkStart = chunkStart.plusDays(chunkDays)) {
+                if (Thread.currentThread().isInterrupted()) {
+                    completion.put("cancelled", true);
+                    return;
+                }
+                
+                LocalDate chunkEnd = chunkStart.plusDays(chunkDays - 1);
+                if (chunkEnd.isAfter(endDate)) {
+                    chunkEnd = endDate;
+                }
+                
+                // A stream has no one waiting on a single answer, so it sits out
+                // the read quota instead of handing days back
+                List<DayAggregate> collected = new ArrayList<>();
+                HealthDataCollector.PlannedRead read = collect(dateRange(chunkStart, chunkEnd), originPriority);
+                collected.addAll(read.days);
+                while (!read.deferred.isEmpty()) {
+                    Thread.sleep(Math.max(read.retryAfterMillis, MIN_QUOTA_WAIT_MILLIS));
+                    read = collect(read.deferred, originPriority);
+                    collected.addAll(read.days);
+                }
+                collected.sort((a, b) -> a.date.compareTo(b.date));
+                
+                JSArray chunkData = new JSArray();
+                for (DayAggregate day : collected) {
+                    chunkData.put(toDayData(day));
+                }
+                
+                JSObject chunk = new JSObject();
+                chunk.put("streamId", streamId);
+                chunk.put("index", chunkIndex++);
+                chunk.put("data", chunkData);
+                notifyListeners(EVENT_HEALTH_DATA_CHUNK, chunk);
+            }
+            completion.put("cancelled", false);
+        } catch (InterruptedException e) {
+            completion.put("cancelled", true);
         } catch (Exception e) {
-            Log.e(TAG, "Error collecting day data for " + date, e);
-            return null;
+            Log.e(TAG, "Error streaming health data", e);
+            completion.put("cancelled", false);
+            completion.put("error", "Error retrieving health data: " + e.getMessage());
+        } finally {
+            if (healthDataStreams.remove(streamId) != null) {
+                completion.put("chunks", chunkIndex);
+                notifyListeners(EVENT_HEALTH_DATA_COMPLETE, completion);
+            }
         }
     }
 
+    @Override
+    protected void handleOnDestroy() {
+        collectionExecutor.shutdownNow();
+        dataCallExecutor.shutdownNow();
+        mainHandler.post(() -> {
+            if (manualSyncInfo != null) {
+                manualSyncInfo.removeObserver(manualSyncObserver);
+                periodicSyncInfo.removeObserver(periodicSyncObserver);
+                retrySyncInfo.removeObserver(retrySyncObserver);
+            }
+        });
+        super.handleOnDestroy();
+    }
+
     @PluginMethod
     public void syncHealthData(PluginCall call) {
         // This method would implement the sync logic
@@ -0,0 +1,231 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.security.crypto.EncryptedSharedPreferences;
+import androidx.security.crypto.MasterKey;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Process-wide cache of the companion's encrypted preferences. The Keystore
+// and decryption work happens once, on a background thread; afterwards reads
+// are served from memory and writes are batched into asynchronous flushes.
+//
+// Reads are only meaningful once the store is ready: the worker blocks with
+// awaitReady(), UI code waits for whenReady().
+public final class HealthCredentialStore {
+    private static final String TAG = "HealthCredentialStore";
+    private static final String PREFS_NAME = "health_sync_prefs";
+
+    public static final String KEY_DEVICE_ID = "device_id";
+    public static final String KEY_HMAC_SECRET = "hmac_secret";
+    public static final String KEY_JWT_TOKEN = "jwt_token";
+    public static final String KEY_REFRESH_TOKEN = "refresh_token";
+    public static final String KEY_LAST_SYNC = "last_sync_date";
+    public static final String KEY_DEVICE_REGISTERED = "device_registered";
+    public static final String KEY_HEALTH_PERMISSIONS_GRANTED = "health_permissions_granted";
+
+    // Marks a pending removal, since the maps cannot hold null
+    private static final Object REMOVED = new Object();
+
+    private static volatile HealthCredentialStore instance;
+
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "health-credentials");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CountDownLatch ready = new CountDownLatch(1);
+    private final Map<String, Object> values = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private final Map<String, Object> pendingWrites = new HashMap<>();
+    private boolean flushScheduled;
+
+    private volatile SharedPreferences prefs;
+
+    private HealthCredentialStore(Context context) {
+        ioExecutor.execute(() -> open(context));
+    }
+
+    public static HealthCredentialStore getInstance(Context context) {
+        HealthCredentialStore result = instance;
+        if (result == null) {
+            synchronized (HealthCredentialStore.class) {
+                result = instance;
+                if (result == null) {
+                    result = new HealthCredentialStore(context.getApplicationContext());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        return ready.await(timeout, unit);
+    }
+
+    // Runs the callback on the main thread once the stored values are loaded.
+    public void whenReady(Runnable callback) {
+        if (ready.getCount() == 0) {
+            mainHandler.post(callback);
+        } else {
+            ioExecutor.execute(() -> mainHandler.post(callback));
+        }
+    }
+
+    // False when the encrypted preferences could not be opened; values then live in memory only.
+    public boolean isPersistent() {
+        return prefs != null;
+    }
+
+    public String getDeviceId() {
+        return getString(KEY_DEVICE_ID, null);
+    }
+
+    public String getHmacSecret() {
+        return getString(KEY_HMAC_SECRET, null);
+    }
+
+    public String getJwtToken() {
+        return getString(KEY_JWT_TOKEN, null);
+    }
+
+    public String getRefreshToken() {
+        return getString(KEY_REFRESH_TOKEN, null);
+    }
+
+    public boolean isDeviceRegistered() {
+        return getBoolean(KEY_DEVICE_REGISTERED, false);
+    }
+
+    public String getString(String key, String defaultValue) {
+        Object value = values.get(key);
+        return value instanceof String ? (String) value : defaultValue;
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Object value = values.get(key);
+        return value instanceof Boolean ? (Boolean) value : defaultValue;
+    }
+
+    public Editor edit() {
+        return new Editor();
+    }
+
+    private void open(Context context) {
+        try {
+            MasterKey masterKey = new MasterKey.Builder(context)
+                .setKeyScheme(MasterKey.KeyScheme.AES256_GCM)
+                .build();
+
+            prefs = EncryptedSharedPreferences.create(
+                context,
+                PREFS_NAME,
+                masterKey,
+                EncryptedSharedPreferences.PrefKeyEncryptionScheme.AES256_SIV,
+                EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM
+            );
+
+            synchronized (this) {
+                // Writes made before the file was open win over what is on disk
+                for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+                    if (entry.getValue() != null && !pendingWrites.containsKey(entry.getKey())) {
+                        values.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        } catch (GeneralSecurityException | IOException e) {
+            Log.e(TAG, "Error creating encrypted preferences", e);
+        } finally {
+            ready.countDown();
+        }
+    }
+
+    private void applyChanges(Map<String, Object> changes) {
+        synchronized (this) {
+            for (Map.Entry<String, Object> change : changes.entrySet()) {
+                if (change.getValue() == REMOVED) {
+                    values.remove(change.getKey());
+                } else {
+                    values.put(change.getKey(), change.getValue());
+                }
+            }
+            pendingWrites.putAll(changes);
+
+            if (flushScheduled) {
+                // Picked up by the flush that is already queued
+                return;
+            }
+            flushScheduled = true;
+        }
+        ioExecutor.execute(this::flush);
+    }
+
+    private void flush() {
+        Map<String, Object> batch;
+        synchronized (this) {
+            batch = new HashMap<>(pendingWrites);
+            pendingWrites.clear();
+            flushScheduled = false;
+        }
+
+        if (prefs == null || batch.isEmpty()) {
+            return;
+        }
+
+        SharedPreferences.Editor editor = prefs.edit();
+        for (Map.Entry<String, Object> entry : batch.entrySet()) {
+            Object value = entry.getValue();
+            if (value == REMOVED) {
+                editor.remove(entry.getKey());
+            } else if (value instanceof Boolean) {
+                editor.putBoolean(entry.getKey(), (Boolean) value);
+            } else {
+                editor.putString(entry.getKey(), (String) value);
+            }
+        }
+        // Already off the main thread, so write synchronously and keep flushes ordered
+        if (!editor.commit()) {
+            Log.w(TAG, "Failed to persist " + batch.size() + " credential changes");
+        }
+    }
+
+    public final class Editor {
+        private final Map<String, Object> changes = new HashMap<>();
+
+        public Editor putString(String key, String value) {
+            changes.put(key, value == null ? REMOVED : value);
+            return this;
+        }
+
+        public Editor putBoolean(String key, boolean value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        public Editor remove(String key) {
+            changes.put(key, REMOVED);
+            return this;
+        }
+
+        // Visible to readers immediately, persisted asynchronously
+        public void apply() {
+            HealthCredentialStore.this.applyChanges(changes);
+        }
+    }
+}
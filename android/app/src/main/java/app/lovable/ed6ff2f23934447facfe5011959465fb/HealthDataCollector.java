@@ -0,0 +1,351 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import androidx.health.connect.client.HealthConnectClient;
+import androidx.health.connect.client.aggregate.AggregateMetric;
+import androidx.health.connect.client.aggregate.AggregationResult;
+import androidx.health.connect.client.aggregate.AggregationResultGroupedByPeriod;
+import androidx.health.connect.client.records.HeartRateRecord;
+import androidx.health.connect.client.records.Record;
+import androidx.health.connect.client.records.SleepSessionRecord;
+import androidx.health.connect.client.records.StepsRecord;
+import androidx.health.connect.client.records.TotalCaloriesBurnedRecord;
+import androidx.health.connect.client.records.metadata.DataOrigin;
+import androidx.health.connect.client.request.AggregateGroupByPeriodRequest;
+import androidx.health.connect.client.request.ReadRecordsRequest;
+import androidx.health.connect.client.response.ReadRecordsResponse;
+import androidx.health.connect.client.time.TimeRangeFilter;
+import androidx.health.connect.client.units.Energy;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import kotlin.coroutines.EmptyCoroutineContext;
+import kotlin.jvm.JvmClassMappingKt;
+import kotlinx.coroutines.BuildersKt;
+
+// Collects per-day totals for a whole date range with a single grouped
+// aggregation, so an N-day range costs one Health Connect call instead of
+// one read per record type per day. Intraday heart rate is opt-in and only
+// read for days the aggregation reports heart rate for.
+//
+// The de-duplicating path reads each record type on its own thread, so a
+// range costs about as long as its slowest read rather than the sum of them.
+//
+// collectPlanned() reads in ReadPlanner order and only while a HealthReadQuota
+// covers the estimated calls; what does not fit is handed back as deferred.
+public class HealthDataCollector {
+    private static final int PAGE_SIZE = 1000;
+    // One thread per concurrent read of collectRangeDeduplicated, shared by every
+    // collector in the process so the worker and the plugin together stay bounded
+    private static final int MAX_CONCURRENT_READS = 4;
+    // Keeps every chunk's estimated cost far below a quota's capacity
+    private static final int MAX_PLANNED_CHUNK_DAYS = 31;
+    // For estimating record pages; a phone logs steps every few minutes
+    private static final int RECORDS_PER_DAY_ESTIMATE = 300;
+    private static final AtomicInteger READ_THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService READ_EXECUTOR = Executors.newFixedThreadPool(MAX_CONCURRENT_READS, runnable -> {
+        Thread thread = new Thread(runnable, "health-read-" + READ_THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final double MILLIS_PER_TENTH_HOUR = 6 * 60 * 1000;
+
+    private static final Set<AggregateMetric<?>> DAY_METRICS = Set.of(
+            StepsRecord.COUNT_TOTAL,
+            HeartRateRecord.BPM_AVG,
+            HeartRateRecord.BPM_MIN,
+            HeartRateRecord.BPM_MAX,
+            SleepSessionRecord.SLEEP_DURATION_TOTAL,
+            TotalCaloriesBurnedRecord.ENERGY_TOTAL
+    );
+
+    private final HealthConnectClient healthConnectClient;
+    private final HeartRateBucketer heartRateBucketer;
+
+    // Time spent in Health Connect calls, for sync metrics
+    private long aggregateNanos;
+    private long heartRateNanos;
+
+    public HealthDataCollector(HealthConnectClient healthConnectClient) {
+        this(healthConnectClient, 0);
+    }
+
+    // heartRateBucketMinutes of 0 leaves out the intraday series
+    public HealthDataCollector(HealthConnectClient healthConnectClient, int heartRateBucketMinutes) {
+        this.healthConnectClient = healthConnectClient;
+        this.heartRateBucketer = heartRateBucketMinutes > 0
+            ? new HeartRateBucketer(healthConnectClient, heartRateBucketMinutes)
+            : null;
+    }
+
+    // Returns one entry per day in [startDate, endDate] that has any data, in date order.
+    public List<DayAggregate> collectRange(LocalDate startDate, LocalDate endDate) throws InterruptedException {
+        if (endDate.isBefore(startDate)) {
+            return Collections.emptyList();
+        }
+
+        // Local date-times make Health Connect slice on local day boundaries
+        AggregateGroupByPeriodRequest request = new AggregateGroupByPeriodRequest(
+            DAY_METRICS,
+            TimeRangeFilter.between(startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay()),
+            Period.ofDays(1),
+            Collections.<DataOrigin>emptySet()
+        );
+
+        long aggregateStart = System.nanoTime();
+        List<AggregationResultGroupedByPeriod> buckets = BuildersKt.runBlocking(
+            EmptyCoroutineContext.INSTANCE,
+            (scope, continuation) -> healthConnectClient.aggregateGroupByPeriod(request, continuation)
+        );
+        aggregateNanos += System.nanoTime() - aggregateStart;
+
+        ZoneId zone = ZoneId.systemDefault();
+        List<DayAggregate> days = new ArrayList<>(buckets.size());
+        for (AggregationResultGroupedByPeriod bucket : buckets) {
+            DayAggregate day = toDayAggregate(bucket.getStartTime().toLocalDate(), bucket.getResult());
+            if (heartRateBucketer != null && day.heartRateAvg != null) {
+                long heartRateStart = System.nanoTime();
+                day = day.withHeartRateSeries(heartRateBucketer.collectDay(day.date, zone));
+                heartRateNanos += System.nanoTime() - heartRateStart;
+            }
+            if (!day.isEmpty()) {
+                days.add(day);
+            }
+        }
+        return days;
+    }
+
+    // Like collectRange, but steps, sleep and calories are recomputed from the
+    // raw records with overlaps across apps removed, ranked by originPriority
+    // (package names, most trusted first; unlisted apps rank last). Heart rate
+    // is an average, not a sum, so it keeps the aggregated values.
+    public List<DayAggregate> collectRangeDeduplicated(LocalDate startDate, LocalDate endDate,
+                                                       List<String> originPriority) throws InterruptedException {
+        if (endDate.isBefore(startDate)) {
+            return Collections.emptyList();
+        }
+
+        ZoneId zone = ZoneId.systemDefault();
+        TimeRangeFilter range = TimeRangeFilter.between(startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay());
+
+        // Each task fills its own deduplicator; get() publishes the results to this thread
+        List<Future<?>> reads = new ArrayList<>(4);
+        Future<Map<LocalDate, Double>> stepsRead = submit(reads, () -> {
+            IntervalDeduplicator steps = new IntervalDeduplicator();
+            readRecords(StepsRecord.class, range, record -> steps.add(record.getStartTime(), record.getEndTime(),
+                record.getCount(), rank(record, originPriority)));
+            return steps.totalsByDay(zone);
+        });
+        Future<Map<LocalDate, Double>> sleepRead = submit(reads, () -> {
+            IntervalDeduplicator sleep = new IntervalDeduplicator();
+            readRecords(SleepSessionRecord.class, range, record -> sleep.add(record.getStartTime(), record.getEndTime(),
+                Duration.between(record.getStartTime(), record.getEndTime()).toMillis(), rank(record, originPriority)));
+            return sleep.totalsByDay(zone);
+        });
+        Future<Map<LocalDate, Double>> caloriesRead = submit(reads, () -> {
+            IntervalDeduplicator calories = new IntervalDeduplicator();
+            readRecords(TotalCaloriesBurnedRecord.class, range, record -> calories.add(record.getStartTime(), record.getEndTime(),
+                record.getEnergy().getInKilocalories(), rank(record, originPriority)));
+            return calories.totalsByDay(zone);
+        });
+        Future<List<DayAggregate>> aggregateRead = submit(reads, () -> collectRange(startDate, endDate));
+
+        Map<LocalDate, Double> stepsByDay = join(stepsRead, reads);
+        Map<LocalDate, Double> sleepByDay = join(sleepRead, reads);
+        Map<LocalDate, Double> caloriesByDay = join(caloriesRead, reads);
+        List<DayAggregate> aggregated = join(aggregateRead, reads);
+        List<DayAggregate> days = new ArrayList<>(aggregated.size());
+        for (DayAggregate day : aggregated) {
+            Double daySteps = stepsByDay.get(day.date);
+            Double daySleep = sleepByDay.get(day.date);
+            Double dayCalories = caloriesByDay.get(day.date);
+            DayAggregate deduplicated = new DayAggregate(
+                day.date,
+                daySteps == null ? null : Math.round(daySteps),
+                day.heartRateAvg,
+                day.heartRateMin,
+                day.heartRateMax,
+                daySleep == null ? null : Math.round(daySleep / MILLIS_PER_TENTH_HOUR) / 10.0,
+                dayCalories == null ? null : Math.round(dayCalories),
+                day.heartRateSeries
+            );
+            if (!deduplicated.isEmpty()) {
+                days.add(deduplicated);
+            }
+        }
+        return days;
+    }
+
+    // Reads days in priority order (today, then visibleFrom..visibleTo, then the
+    // rest) while the quota lasts. Once a chunk does not fit, it and every
+    // later chunk are deferred, so lower priorities never jump the queue.
+    public PlannedRead collectPlanned(SortedSet<LocalDate> dates, LocalDate visibleFrom, LocalDate visibleTo,
+                                      List<String> originPriority, HealthReadQuota quota) throws InterruptedException {
+        List<DayAggregate> days = new ArrayList<>();
+        SortedSet<LocalDate> deferred = new TreeSet<>();
+        long retryAfterMillis = 0;
+        boolean deduplicated = !originPriority.isEmpty();
+
+        for (ReadPlanner.Chunk chunk : ReadPlanner.plan(dates, LocalDate.now(), visibleFrom, visibleTo, MAX_PLANNED_CHUNK_DAYS)) {
+            if (!deferred.isEmpty()) {
+                deferred.addAll(chunk.dates);
+                continue;
+            }
+            int cost = estimateReadCalls(chunk.spanDays(), deduplicated);
+            if (!quota.tryAcquire(cost)) {
+                deferred.addAll(chunk.dates);
+                retryAfterMillis = quota.millisUntil(cost);
+                continue;
+            }
+
+            List<DayAggregate> read = deduplicated
+                ? collectRangeDeduplicated(chunk.start, chunk.end, originPriority)
+                : collectRange(chunk.start, chunk.end);
+            for (DayAggregate day : read) {
+                if (chunk.dates.contains(day.date)) {
+                    days.add(day);
+                }
+            }
+        }
+
+        days.sort((a, b) -> a.date.compareTo(b.date));
+        return new PlannedRead(days, deferred, retryAfterMillis);
+    }
+
+    // Upper-bound guess of the Health Connect calls one chunk takes.
+    private int estimateReadCalls(int spanDays, boolean deduplicated) {
+        // The grouped aggregation
+        int calls = 1;
+        if (heartRateBucketer != null) {
+            // At least one page of samples per day with heart rate
+            calls += spanDays;
+        }
+        if (deduplicated) {
+            // Steps, sleep and calories records, paged
+            calls += 3 * (1 + spanDays * RECORDS_PER_DAY_ESTIMATE / PAGE_SIZE);
+        }
+        return calls;
+    }
+
+    public long getAggregateMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(aggregateNanos);
+    }
+
+    public long getHeartRateMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(heartRateNanos);
+    }
+
+    public static class PlannedRead {
+        // Date order
+        public final List<DayAggregate> days;
+        // Requested days that were not read; empty when everything fit
+        public final SortedSet<LocalDate> deferred;
+        // When the quota should cover the first deferred chunk
+        public final long retryAfterMillis;
+
+        PlannedRead(List<DayAggregate> days, SortedSet<LocalDate> deferred, long retryAfterMillis) {
+            this.days = days;
+            this.deferred = deferred;
+            this.retryAfterMillis = retryAfterMillis;
+        }
+    }
+
+    private static <T> Future<T> submit(List<Future<?>> reads, Callable<T> read) {
+        Future<T> future = READ_EXECUTOR.submit(read);
+        reads.add(future);
+        return future;
+    }
+
+    // Waits for one read; if it fails or the caller is interrupted, the other
+    // reads are cancelled rather than left running for nobody.
+    private static <T> T join(Future<T> read, List<Future<?>> reads) throws InterruptedException {
+        try {
+            return read.get();
+        } catch (InterruptedException e) {
+            cancel(reads);
+            throw e;
+        } catch (ExecutionException e) {
+            cancel(reads);
+            Throwable cause = e.getCause();
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Health Connect read failed", cause);
+        }
+    }
+
+    private static void cancel(List<Future<?>> reads) {
+        for (Future<?> read : reads) {
+            read.cancel(true);
+        }
+    }
+
+    private <T extends Record> void readRecords(Class<T> recordType, TimeRangeFilter range,
+                                                Consumer<T> consumer) throws InterruptedException {
+        String pageToken = null;
+        do {
+            ReadRecordsRequest<T> request = new ReadRecordsRequest<>(
+                JvmClassMappingKt.getKotlinClass(recordType),
+                range,
+                Collections.<DataOrigin>emptySet(),
+                true,
+                PAGE_SIZE,
+                pageToken
+            );
+            ReadRecordsResponse<T> response = BuildersKt.runBlocking(
+                EmptyCoroutineContext.INSTANCE,
+                (scope, continuation) -> healthConnectClient.readRecords(request, continuation)
+            );
+            for (T record : response.getRecords()) {
+                consumer.accept(record);
+            }
+            pageToken = response.getPageToken();
+        } while (pageToken != null);
+    }
+
+    private static int rank(Record record, List<String> originPriority) {
+        int rank = originPriority.indexOf(record.getMetadata().getDataOrigin().getPackageName());
+        return rank < 0 ? originPriority.size() : rank;
+    }
+
+    private static DayAggregate toDayAggregate(LocalDate date, AggregationResult result) {
+        Duration sleep = result.get(SleepSessionRecord.SLEEP_DURATION_TOTAL);
+        Energy energy = result.get(TotalCaloriesBurnedRecord.ENERGY_TOTAL);
+
+        Double sleepHours = sleep == null ? null : Math.round(sleep.toMinutes() / 6.0) / 10.0;
+        Long calories = energy == null ? null : Math.round(energy.getInKilocalories());
+
+        return new DayAggregate(
+            date,
+            result.get(StepsRecord.COUNT_TOTAL),
+            result.get(HeartRateRecord.BPM_AVG),
+            result.get(HeartRateRecord.BPM_MIN),
+            result.get(HeartRateRecord.BPM_MAX),
+            sleepHours,
+            calories
+        );
+    }
+}
@@ -0,0 +1,84 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.concurrent.TimeUnit;
+
+// Client-side budget for Health Connect calls. Health Connect rate-limits
+// each app over rolling 15 minute windows, with a smaller allowance for
+// background work, and rejects calls past the limit. Spending from a token
+// bucket sized below those limits lets callers defer reads up front instead
+// of having them fail halfway. The headroom covers calls made outside the
+// planner, such as polling changes tokens.
+//
+// Buckets are saved to preferences, the worker runs in fresh processes.
+// Plugin calls spend from the same bucket concurrently.
+public final class HealthReadQuota {
+    private static final String PREFS_NAME = "health_read_quota";
+    private static final long WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    private static final long FOREGROUND_CALLS = 1000;
+    private static final long BACKGROUND_CALLS = 500;
+
+    private static volatile HealthReadQuota foreground;
+    private static volatile HealthReadQuota background;
+
+    private final SharedPreferences prefs;
+    private final String keyPrefix;
+    private final TokenBucket bucket;
+
+    private HealthReadQuota(Context context, String keyPrefix, long capacity) {
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.keyPrefix = keyPrefix;
+        long now = System.currentTimeMillis();
+        this.bucket = new TokenBucket(capacity, WINDOW_MILLIS,
+            prefs.getFloat(keyPrefix + "tokens", capacity),
+            prefs.getLong(keyPrefix + "updated_at", now));
+    }
+
+    // Reads on behalf of the visible app
+    public static HealthReadQuota foreground(Context context) {
+        HealthReadQuota result = foreground;
+        if (result == null) {
+            synchronized (HealthReadQuota.class) {
+                result = foreground;
+                if (result == null) {
+                    result = new HealthReadQuota(context.getApplicationContext(), "foreground_", FOREGROUND_CALLS);
+                    foreground = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    // Reads from WorkManager
+    public static HealthReadQuota background(Context context) {
+        HealthReadQuota result = background;
+        if (result == null) {
+            synchronized (HealthReadQuota.class) {
+                result = background;
+                if (result == null) {
+                    result = new HealthReadQuota(context.getApplicationContext(), "background_", BACKGROUND_CALLS);
+                    background = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public synchronized boolean tryAcquire(int calls) {
+        long now = System.currentTimeMillis();
+        boolean acquired = bucket.tryAcquire(Math.min(calls, bucket.getCapacity()), now);
+        if (acquired) {
+            prefs.edit()
+                .putFloat(keyPrefix + "tokens", (float) bucket.getTokens())
+                .putLong(keyPrefix + "updated_at", bucket.getUpdatedAt())
+                .apply();
+        }
+        return acquired;
+    }
+
+    public synchronized long millisUntil(int calls) {
+        return bucket.millisUntil(calls, System.currentTimeMillis());
+    }
+}
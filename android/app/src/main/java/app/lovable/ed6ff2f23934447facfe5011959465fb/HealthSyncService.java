@@ -1,281 +1,447 @@
 package app.lovable.ed6ff2f23934447facfe5011959465fb;
 
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
 import android.content.Context;
-import android.content.SharedPreferences;
+import android.os.Build;
 import android.util.Log;
-import androidx.security.crypto.EncryptedSharedPreferences;
-import androidx.security.crypto.MasterKey;
+import androidx.health.connect.client.HealthConnectClient;
+import androidx.core.app.NotificationCompat;
+import androidx.work.Data;
+import androidx.work.ForegroundInfo;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
-import androidx.work.Constraints;
-import androidx.work.NetworkType;
-import androidx.work.PeriodicWorkRequest;
-import androidx.work.WorkManager;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import java.io.IOException;
-import java.security.GeneralSecurityException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-
-import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.RequestBody;
-import okhttp3.Response;
 
 public class HealthSyncService extends Worker {
     private static final String TAG = "HealthSyncService";
-    private static final String PREFS_NAME = "health_sync_prefs";
-    private static final String KEY_DEVICE_ID = "device_id";
-    private static final String KEY_HMAC_SECRET = "hmac_secret";
-    private static final String KEY_JWT_TOKEN = "jwt_token";
-    private static final String KEY_LAST_SYNC = "last_sync_date";
+    private static final String KEY_CHANGES_TOKEN_PREFIX = "changes_token_";
+    // Days the read quota pushed out of an earlier run, comma separated
+    private static final String KEY_DEFERRED_READ_DAYS = "deferred_read_days";
+    static final int SYNC_WINDOW_DAYS = 7;
+    private static final long CREDENTIALS_TIMEOUT_SECONDS = 10;
+    private static final int MAX_DAYS_PER_DRAIN = 366;
+    private static final long MAX_BATCH_BYTES = 64 * 1024;
+    private static final int DEFAULT_MAX_UPLOADS_IN_FLIGHT = 2;
+    private static final long RETRY_BASE_MILLIS = 30 * 1000L;
+    private static final long RETRY_CAP_MILLIS = 6 * 60 * 60 * 1000L;
+    private static final int MAX_RETRY_ATTEMPTS = 8;
+    private static final String NOTIFICATION_CHANNEL_ID = "health_sync";
+    private static final int NOTIFICATION_ID = 4201;
+    private static final DateTimeFormatter LAST_SYNC_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+    
+    // Progress and output Data keys, read back through WorkInfo
+    public static final String PROGRESS_PHASE = "phase";
+    public static final String PROGRESS_DAYS_COLLECTED = "days_collected";
+    public static final String PROGRESS_DAYS_UPLOADED = "days_uploaded";
+    public static final String PROGRESS_BYTES_SENT = "bytes_sent";
+    public static final String PROGRESS_COLLECT_MILLIS = "collect_millis";
+    public static final String PROGRESS_UPLOAD_MILLIS = "upload_millis";
+    public static final String PROGRESS_ERROR = "error";
+    public static final String PROGRESS_NEXT_RETRY_AT = "next_retry_at";
     
-    private static final String API_BASE_URL = "https://wehexulgoxwswkaoygnx.supabase.co/functions/v1";
-    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    public static final String PHASE_STARTING = "starting";
+    public static final String PHASE_COLLECTING = "collecting";
+    public static final String PHASE_UPLOADING = "uploading";
+    public static final String PHASE_DONE = "done";
+    public static final String PHASE_FAILED = "failed";
+    // The run ended early and SyncScheduler holds a delayed retry
+    public static final String PHASE_RETRY_SCHEDULED = "retry_scheduled";
     
-    private HealthConnectPlugin healthPlugin;
-    private SharedPreferences encryptedPrefs;
+    public static final String INPUT_MAX_UPLOADS_IN_FLIGHT = "max_uploads_in_flight";
+    // Width of the intraday heart rate buckets; 0 uploads daily values only
+    public static final String INPUT_HEART_RATE_BUCKET_MINUTES = "heart_rate_bucket_minutes";
+    static final int DEFAULT_HEART_RATE_BUCKET_MINUTES = 5;
+    // Set by SyncScheduler.scheduleRetry; 0 for periodic and manual runs
+    public static final String INPUT_RETRY_ATTEMPT = "retry_attempt";
+    // Set by SyncScheduler.scheduleDeferredReads on the run it schedules
+    public static final String INPUT_DEFERRED_RUN = "deferred_run";
+    
+    private HealthConnectClient healthConnectClient;
+    private HealthDataCollector healthDataCollector;
+    private HealthCredentialStore credentialStore;
+    private HealthTokenManager tokenManager;
     private OkHttpClient httpClient;
+    private final SyncCircuitBreaker circuitBreaker;
+    private final int retryAttempt;
+    private final boolean deferredRun;
+    private final Random random = new Random();
+    
+    // Written by the worker thread and OkHttp callbacks while publishing progress
+    private volatile int daysCollected;
+    private final AtomicInteger daysUploaded = new AtomicInteger();
+    private volatile long bytesSent;
+    private volatile long collectMillis;
+    private volatile long uploadMillis;
+    private volatile long nextRetryAt;
+    private long retryAfterMillis = -1;
+    private boolean serverUnhealthy;
+    private boolean sessionExpired;
+    private final SyncMetrics metrics = new SyncMetrics();
 
     public HealthSyncService(Context context, WorkerParameters params) {
         super(context, params);
-        this.healthPlugin = new HealthConnectPlugin();
-        this.healthPlugin.load();
-        this.httpClient = new OkHttpClient.Builder()
-            .connectTimeout(30, TimeUnit.SECONDS)
-            .readTimeout(30, TimeUnit.SECONDS)
-            .build();
-        
-        try {
-            MasterKey masterKey = new MasterKey.Builder(context)
-                .setKeyScheme(MasterKey.KeyScheme.AES256_GCM)
-                .build();
-                
-            this.encryptedPrefs = EncryptedSharedPreferences.create(
-                context,
-                PREFS_NAME,
-                masterKey,
-                EncryptedSharedPreferences.PrefKeyEncryptionScheme.AES256_SIV,
-                EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM
-            );
-        } catch (GeneralSecurityException | IOException e) {
-            Log.e(TAG, "Error creating encrypted preferences", e);
+        if (HealthConnectClient.getSdkStatus(context) == HealthConnectClient.SDK_AVAILABLE) {
+            this.healthConnectClient = HealthConnectClient.getOrCreate(context);
+            this.healthDataCollector = new HealthDataCollector(healthConnectClient,
+                params.getInputData().getInt(INPUT_HEART_RATE_BUCKET_MINUTES, DEFAULT_HEART_RATE_BUCKET_MINUTES));
         }
+        this.httpClient = HealthHttpClient.get();
+        this.credentialStore = HealthCredentialStore.getInstance(context);
+        this.tokenManager = HealthTokenManager.getInstance(context);
+        this.circuitBreaker = SyncCircuitBreaker.getInstance(context);
+        this.retryAttempt = params.getInputData().getInt(INPUT_RETRY_ATTEMPT, 0);
+        this.deferredRun = params.getInputData().getBoolean(INPUT_DEFERRED_RUN, false);
     }
 
     @Override
     public Result doWork() {
+        metrics.startedAt = System.currentTimeMillis();
+        metrics.attempt = retryAttempt + getRunAttemptCount();
+        long start = System.nanoTime();
+        
+        Result result = sync();
+        
+        metrics.totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        metrics.daysUploaded = daysUploaded.get();
+        metrics.bytesSent = bytesSent;
+        SyncMetricsLog.getInstance(getApplicationContext()).append(metrics);
+        return result;
+    }
+    
+    private Result sync() {
         try {
             Log.d(TAG, "Starting health data sync");
+            publishProgress(PHASE_STARTING);
+            
+            // Usually already loaded by an earlier run or the companion screen
+            long credentialStart = System.nanoTime();
+            boolean credentialsReady = credentialStore.awaitReady(CREDENTIALS_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            metrics.credentialMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - credentialStart);
+            if (!credentialsReady) {
+                Log.w(TAG, "Credential store not ready");
+                return retryLater("Credential store not ready", 0);
+            }
             
             // Check if device is registered
-            String deviceId = encryptedPrefs.getString(KEY_DEVICE_ID, null);
-            String hmacSecret = encryptedPrefs.getString(KEY_HMAC_SECRET, null);
-            String jwtToken = encryptedPrefs.getString(KEY_JWT_TOKEN, null);
+            String deviceId = credentialStore.getDeviceId();
+            String hmacSecret = credentialStore.getHmacSecret();
             
-            if (deviceId == null || hmacSecret == null || jwtToken == null) {
+            if (deviceId == null || hmacSecret == null) {
                 Log.w(TAG, "Device not registered or missing credentials");
-                return Result.failure();
+                metrics.outcome = SyncMetrics.OUTCOME_FAILURE;
+                return Result.failure(result(PHASE_FAILED, "Device not registered"));
             }
             
-            // Get health data from last 7 days
-            JSONObject healthData = collectHealthData();
-            if (healthData == null) {
-                Log.w(TAG, "No health data to sync");
-                return Result.success();
+            // Nothing collected now could be uploaded, so leave Health Connect alone
+            // until the app hands over a new session
+            if (tokenManager.getValidToken() == null) {
+                return sessionExpired();
             }
             
-            // Send data to API
-            boolean success = syncHealthData(deviceId, hmacSecret, jwtToken, healthData);
+            SyncOutbox outbox = SyncOutbox.getInstance(getApplicationContext());
             
-            if (success) {
-                // Update last sync date
-                encryptedPrefs.edit()
-                    .putString(KEY_LAST_SYNC, LocalDate.now().toString())
-                    .apply();
-                Log.d(TAG, "Health data sync completed successfully");
-                return Result.success();
-            } else {
-                Log.e(TAG, "Health data sync failed");
-                return Result.retry();
+            // Retries only re-send what is already queued
+            if (getRunAttemptCount() == 0 && retryAttempt == 0) {
+                publishProgress(PHASE_COLLECTING);
+                long collectStart = System.nanoTime();
+                collectIntoOutbox(outbox);
+                collectMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - collectStart);
             }
             
-        } catch (Exception e) {
-            Log.e(TAG, "Error during health sync", e);
-            return Result.failure();
-        }
-    }
-    
-    private JSONObject collectHealthData() {
-        try {
-            // Get data from last 7 days
-            LocalDate endDate = LocalDate.now();
-            LocalDate startDate = endDate.minusDays(7);
-            
-            JSONObject requestData = new JSONObject();
-            requestData.put("deviceId", encryptedPrefs.getString(KEY_DEVICE_ID, ""));
-            requestData.put("platform", "android");
-            
-            JSONObject window = new JSONObject();
-            window.put("from", startDate.toString());
-            window.put("to", endDate.toString());
-            requestData.put("window", window);
-            
-            JSONArray dataArray = new JSONArray();
-            
-            // Collect data for each day
-            for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
-                JSONObject dayData = collectDayData(date);
-                if (dayData != null) {
-                    dataArray.put(dayData);
-                }
+            // Collected days wait in the outbox while the backend recovers
+            long now = System.currentTimeMillis();
+            long blockedUntil = circuitBreaker.blockedUntil(now);
+            if (blockedUntil > 0) {
+                Log.w(TAG, "Uploads paused by the circuit breaker");
+                return retryLater("Sync server unavailable", blockedUntil - now);
             }
             
-            if (dataArray.length() == 0) {
-                return null;
+            publishProgress(PHASE_UPLOADING);
+            long uploadStart = System.nanoTime();
+            boolean drained = drainOutbox(outbox, deviceId, hmacSecret);
+            uploadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - uploadStart);
+            if (!drained && sessionExpired) {
+                return sessionExpired();
+            }
+            if (!drained) {
+                Log.e(TAG, "Health data sync failed, pending days stay queued");
+                long minDelay = Math.max(0, retryAfterMillis);
+                if (serverUnhealthy) {
+                    now = System.currentTimeMillis();
+                    long resumeAt = circuitBreaker.recordFailure(now, minDelay);
+                    minDelay = Math.max(minDelay, resumeAt - now);
+                }
+                return retryLater("Upload failed", minDelay);
             }
+            circuitBreaker.recordSuccess();
             
-            requestData.put("data", dataArray);
-            return requestData;
+            // Update last sync date
+            credentialStore.edit()
+                .putString(HealthCredentialStore.KEY_LAST_SYNC, LocalDateTime.now().format(LAST_SYNC_FORMAT))
+                .apply();
+            Log.d(TAG, "Health data sync completed: " + daysUploaded.get() + " days, " + bytesSent + " bytes, "
+                + collectMillis + " ms collecting, " + uploadMillis + " ms uploading");
+            metrics.outcome = SyncMetrics.OUTCOME_SUCCESS;
+            return Result.success(result(PHASE_DONE, null));
             
         } catch (Exception e) {
-            Log.e(TAG, "Error collecting health data", e);
-            return null;
+            Log.e(TAG, "Error during health sync", e);
+            metrics.outcome = SyncMetrics.OUTCOME_FAILURE;
+            return Result.failure(result(PHASE_FAILED, e.getMessage()));
         }
     }
     
-    private JSONObject collectDayData(LocalDate date) {
-        try {
-            // Use the HealthConnectPlugin to get data for the specific date
-            // This is a simplified version - in practice, you'd implement the actual Health Connect queries
-            JSONObject dayData = new JSONObject();
-            dayData.put("date", date.toString());
-            
-            // Mock data for now - replace with actual Health Connect queries
-            dayData.put("steps", (int)(Math.random() * 10000) + 5000);
-            dayData.put("heart_rate", (int)(Math.random() * 40) + 60);
-            dayData.put("sleep_hours", Math.round((Math.random() * 4 + 6) * 10.0) / 10.0);
-            dayData.put("calories", (int)(Math.random() * 1000) + 1500);
-            
-            return dayData;
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Error collecting day data for " + date, e);
-            return null;
+    // Hands the retry to SyncScheduler instead of Result.retry(), whose backoff
+    // has no jitter and cannot honour Retry-After. Past MAX_RETRY_ATTEMPTS the
+    // queued days wait for the next periodic run.
+    private Result retryLater(String reason, long minDelayMillis) {
+        metrics.outcome = SyncMetrics.OUTCOME_RETRY;
+        if (retryAttempt >= MAX_RETRY_ATTEMPTS) {
+            Log.w(TAG, "Giving up after " + retryAttempt + " retries: " + reason);
+            return Result.failure(result(PHASE_FAILED, reason));
         }
+        
+        long delay = Math.max(minDelayMillis,
+            SyncBackoff.fullJitterMillis(retryAttempt, RETRY_BASE_MILLIS, RETRY_CAP_MILLIS, random));
+        SyncScheduler.scheduleRetry(getApplicationContext(), delay, retryAttempt + 1, retryAttempt > 0);
+        nextRetryAt = System.currentTimeMillis() + delay;
+        return Result.success(result(PHASE_RETRY_SCHEDULED, reason));
+    }
+    
+    // Not a server failure, so neither the circuit breaker nor a retry: queued
+    // days wait for a run that has a session again.
+    private Result sessionExpired() {
+        Log.w(TAG, "No valid session, skipping sync");
+        metrics.outcome = SyncMetrics.OUTCOME_FAILURE;
+        return Result.failure(result(PHASE_FAILED, "Session expired"));
+    }
+    
+    private void publishProgress(String phase) {
+        setProgressAsync(result(phase, null));
     }
     
-    private boolean syncHealthData(String deviceId, String hmacSecret, String jwtToken, JSONObject data) {
+    private Data result(String phase, String error) {
+        Data.Builder data = new Data.Builder()
+            .putString(PROGRESS_PHASE, phase)
+            .putInt(PROGRESS_DAYS_COLLECTED, daysCollected)
+            .putInt(PROGRESS_DAYS_UPLOADED, daysUploaded.get())
+            .putLong(PROGRESS_BYTES_SENT, bytesSent)
+            .putLong(PROGRESS_COLLECT_MILLIS, collectMillis)
+            .putLong(PROGRESS_UPLOAD_MILLIS, uploadMillis);
+        if (error != null) {
+            data.putString(PROGRESS_ERROR, error);
+        }
+        if (nextRetryAt > 0) {
+            data.putLong(PROGRESS_NEXT_RETRY_AT, nextRetryAt);
+        }
+        return data.build();
+    }
+    
+    private void collectIntoOutbox(SyncOutbox outbox) throws InterruptedException {
+        if (healthDataCollector == null) {
+            Log.w(TAG, "Health Connect not available");
+            return;
+        }
+        
         try {
-            String jsonBody = data.toString();
-            
-            // Calculate HMAC signature
-            String signature = calculateHmacSignature(jsonBody, hmacSecret);
-            String idempotencyKey = UUID.randomUUID().toString();
-            
-            RequestBody body = RequestBody.create(jsonBody, JSON);
+            // Only recompute days Health Connect reported as changed since the last run
+            HealthChangeTracker changeTracker = new HealthChangeTracker(healthConnectClient, credentialStore, KEY_CHANGES_TOKEN_PREFIX);
+            long changesStart = System.nanoTime();
+            HealthChangeTracker.ChangeSet changes = changeTracker.pollChanges();
+            metrics.changesMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - changesStart);
+            SortedSet<LocalDate> days = SyncWindow.daysToSync(
+                LocalDate.now(), SYNC_WINDOW_DAYS, changes.requiresFullWindow(), changes.getTouchedDays());
+            days.addAll(loadDeferredDays());
             
-            Request request = new Request.Builder()
-                .url(API_BASE_URL + "/health-sync")
-                .post(body)
-                .addHeader("Authorization", "Bearer " + jwtToken)
-                .addHeader("X-Signature", "sha256=" + signature)
-                .addHeader("X-Idempotency-Key", idempotencyKey)
-                .addHeader("Content-Type", "application/json")
-                .build();
-            
-            try (Response response = httpClient.newCall(request).execute()) {
-                if (response.isSuccessful()) {
-                    Log.d(TAG, "Health data sync successful: " + response.body().string());
-                    return true;
-                } else {
-                    Log.e(TAG, "Health data sync failed: " + response.code() + " " + response.body().string());
-                    return false;
+            if (!days.isEmpty()) {
+                // Today first; whatever the background quota cannot cover waits for a later run
+                HealthDataCollector.PlannedRead read = healthDataCollector.collectPlanned(days, null, null,
+                    Collections.<String>emptyList(), HealthReadQuota.background(getApplicationContext()));
+                long outboxStart = System.nanoTime();
+                outbox.enqueue(read.days);
+                metrics.outboxMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - outboxStart);
+                daysCollected = read.days.size();
+                
+                saveDeferredDays(read.deferred);
+                if (!read.deferred.isEmpty()) {
+                    Log.d(TAG, read.deferred.size() + " days deferred by the read quota");
+                    SyncScheduler.scheduleDeferredReads(getApplicationContext(), read.retryAfterMillis, deferredRun);
                 }
             }
             
+            // Queued and deferred days are durable, so the tokens can move on before the upload
+            changeTracker.commit(changes);
+        } catch (InterruptedException e) {
+            throw e;
         } catch (Exception e) {
-            Log.e(TAG, "Error syncing health data", e);
-            return false;
+            // Whatever is already queued still goes out
+            Log.e(TAG, "Error collecting health data", e);
+        } finally {
+            metrics.aggregateMillis = healthDataCollector.getAggregateMillis();
+            metrics.heartRateMillis = healthDataCollector.getHeartRateMillis();
         }
     }
     
-    private String calculateHmacSignature(String data, String secret) throws Exception {
-        Mac mac = Mac.getInstance("HmacSHA256");
-        SecretKeySpec secretKeySpec = new SecretKeySpec(hexStringToByteArray(secret), "HmacSHA256");
-        mac.init(secretKeySpec);
-        
-        byte[] hash = mac.doFinal(data.getBytes("UTF-8"));
-        return bytesToHex(hash);
-    }
-    
-    private byte[] hexStringToByteArray(String s) {
-        int len = s.length();
-        byte[] data = new byte[len / 2];
-        for (int i = 0; i < len; i += 2) {
-            data[i / 2] = (byte) ((Character.digit(s.charAt(i), 16) << 4)
-                    + Character.digit(s.charAt(i+1), 16));
+    private SortedSet<LocalDate> loadDeferredDays() {
+        SortedSet<LocalDate> days = new TreeSet<>();
+        String stored = credentialStore.getString(KEY_DEFERRED_READ_DAYS, null);
+        if (stored != null && !stored.isEmpty()) {
+            for (String date : stored.split(",")) {
+                days.add(LocalDate.parse(date));
+            }
         }
-        return data;
+        return days;
     }
     
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder result = new StringBuilder();
-        for (byte b : bytes) {
-            result.append(String.format("%02x", b));
+    private void saveDeferredDays(SortedSet<LocalDate> days) {
+        StringBuilder stored = new StringBuilder();
+        for (LocalDate date : days) {
+            if (stored.length() > 0) {
+                stored.append(',');
+            }
+            stored.append(date);
         }
-        return result.toString();
+        credentialStore.edit()
+            .putString(KEY_DEFERRED_READ_DAYS, stored.toString())
+            .apply();
     }
     
-    // Static methods to control the sync service
-    public static void schedulePeriodicSync(Context context) {
-        Constraints constraints = new Constraints.Builder()
-            .setRequiredNetworkType(NetworkType.CONNECTED)
-            .build();
-        
-        PeriodicWorkRequest syncRequest = new PeriodicWorkRequest.Builder(
-            HealthSyncService.class, 
-            24, TimeUnit.HOURS  // Daily sync
-        )
-        .setConstraints(constraints)
-        .build();
-        
-        WorkManager.getInstance(context)
-            .enqueue(syncRequest);
+    private boolean drainOutbox(SyncOutbox outbox, String deviceId, String hmacSecret) throws Exception {
+        int maxInFlight = getInputData().getInt(INPUT_MAX_UPLOADS_IN_FLIGHT, DEFAULT_MAX_UPLOADS_IN_FLIGHT);
+        SyncUploader uploader = new SyncUploader(httpClient, maxInFlight, MAX_BATCH_BYTES);
+        SyncDigestLedger ledger = SyncDigestLedger.getInstance(getApplicationContext());
+        uploader.setDigestLedger(ledger);
+        uploader.setBatchListener((daysAcknowledged, totalBytesSent) -> {
+            daysUploaded.addAndGet(daysAcknowledged);
+            bytesSent = totalBytesSent;
+            publishProgress(PHASE_UPLOADING);
+        });
         
-        Log.d(TAG, "Periodic health sync scheduled");
+        try {
+            boolean refreshedAfterUnauthorized = false;
+            List<SyncOutbox.Entry> entries;
+            while (!(entries = outbox.peek(MAX_DAYS_PER_DRAIN)).isEmpty()) {
+                if (isStopped()) {
+                    return false;
+                }
+                
+                entries = skipUnchanged(outbox, ledger, deviceId, entries);
+                if (entries.isEmpty()) {
+                    continue;
+                }
+                
+                // Collecting and earlier rounds take time; refreshes if the token is now close to expiry
+                String jwtToken = tokenManager.getValidToken();
+                if (jwtToken == null) {
+                    sessionExpired = true;
+                    return false;
+                }
+                
+                List<SyncOutbox.Entry> acknowledged = uploader.upload(deviceId, hmacSecret, jwtToken, entries);
+                outbox.remove(acknowledged);
+                // Days the server refused as invalid would be refused again on every retry
+                List<SyncOutbox.Entry> rejected = uploader.getRejected();
+                if (!rejected.isEmpty()) {
+                    Log.w(TAG, "Dropping " + rejected.size() + " invalid days from the outbox");
+                    outbox.remove(rejected);
+                }
+                
+                if (uploader.isUnauthorized()) {
+                    // Refused tokens are refreshed and the rest resent at once, no backoff;
+                    // a second refusal means the new session is no good either
+                    if (refreshedAfterUnauthorized || tokenManager.refreshAfterUnauthorized(jwtToken) == null) {
+                        sessionExpired = true;
+                        return false;
+                    }
+                    refreshedAfterUnauthorized = true;
+                    continue;
+                }
+                
+                if (acknowledged.size() + rejected.size() < entries.size()) {
+                    // Failed batches stay queued for the retry
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            metrics.signMillis = uploader.getSignMillis();
+            metrics.httpMillis = uploader.getHttpMillis();
+            metrics.httpMaxMillis = uploader.getHttpMaxMillis();
+            metrics.batches = uploader.getBatchCount();
+            metrics.failedBatches = uploader.getFailedBatchCount();
+            retryAfterMillis = uploader.getRetryAfterMillis();
+            serverUnhealthy = uploader.isServerUnhealthy();
+        }
     }
     
-    public static void performImmediateSync(Context context) {
-        Constraints constraints = new Constraints.Builder()
-            .setRequiredNetworkType(NetworkType.CONNECTED)
-            .build();
-        
-        PeriodicWorkRequest syncRequest = new PeriodicWorkRequest.Builder(
-            HealthSyncService.class,
-            15, TimeUnit.MINUTES  // Minimum interval for one-time work
-        )
-        .setConstraints(constraints)
-        .build();
+    // Leaves out metrics whose digest matches what the server last acknowledged.
+    // Days with nothing left are dropped from the outbox without an upload.
+    private static List<SyncOutbox.Entry> skipUnchanged(SyncOutbox outbox, SyncDigestLedger ledger, String deviceId,
+                                                        List<SyncOutbox.Entry> entries) {
+        List<LocalDate> days = new ArrayList<>(entries.size());
+        for (SyncOutbox.Entry entry : entries) {
+            days.add(entry.day.date);
+        }
+        Map<LocalDate, Map<String, Long>> acknowledged = ledger.get(deviceId, days);
         
-        WorkManager.getInstance(context)
-            .enqueue(syncRequest);
+        List<SyncOutbox.Entry> changed = new ArrayList<>(entries.size());
+        List<SyncOutbox.Entry> unchanged = new ArrayList<>();
+        for (SyncOutbox.Entry entry : entries) {
+            Map<String, Long> known = acknowledged.getOrDefault(entry.day.date, Collections.<String, Long>emptyMap());
+            Set<String> stale = new HashSet<>();
+            for (Map.Entry<String, Long> digest : DayDigest.of(entry.day).entrySet()) {
+                if (!digest.getValue().equals(known.get(digest.getKey()))) {
+                    stale.add(digest.getKey());
+                }
+            }
+            DayAggregate day = DayDigest.retain(entry.day, stale);
+            if (day == null) {
+                unchanged.add(entry);
+            } else {
+                changed.add(entry.withDay(day));
+            }
+        }
         
-        Log.d(TAG, "Immediate health sync requested");
+        if (!unchanged.isEmpty()) {
+            outbox.remove(unchanged);
+            Log.d(TAG, unchanged.size() + " unchanged days skipped");
+        }
+        return changed;
     }
     
-    public static void cancelAllSync(Context context) {
-        WorkManager.getInstance(context)
-            .cancelAllWorkByTag("health_sync");
-        Log.d(TAG, "All health sync work cancelled");
+    // Expedited manual syncs run as a foreground service before Android 12
+    @Override
+    public ForegroundInfo getForegroundInfo() {
+        Context context = getApplicationContext();
+        NotificationManager notificationManager = context.getSystemService(NotificationManager.class);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            notificationManager.createNotificationChannel(new NotificationChannel(
+                NOTIFICATION_CHANNEL_ID, "Sincronização de saúde", NotificationManager.IMPORTANCE_LOW));
+        }
+        
+        Notification notification = new NotificationCompat.Builder(context, NOTIFICATION_CHANNEL_ID)
+            .setSmallIcon(android.R.drawable.stat_notify_sync)
+            .setContentTitle("Sincronizando dados de saúde")
+            .setOngoing(true)
+            .build();
+        return new ForegroundInfo(NOTIFICATION_ID, notification);
     }
-}
\ No newline at end of file
+}
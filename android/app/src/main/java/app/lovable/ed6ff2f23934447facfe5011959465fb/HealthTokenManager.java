@@ -0,0 +1,213 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import android.content.Context;
+import android.util.Base64;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+// Keeps the companion's Supabase session usable without the web app open.
+// getValidToken() reads the access token's exp claim and, once it is within
+// REFRESH_MARGIN_MILLIS of expiring, trades the refresh token for a new pair
+// at GoTrue's token endpoint. A 401 means the token was refused whatever its
+// exp says (revoked, signed out elsewhere), so refreshAfterUnauthorized()
+// refreshes without looking at the expiry.
+//
+// Supabase rotates refresh tokens on every use and the web app shares this
+// session, so whichever side refreshes hands the new pair to the other: the
+// web app through updateSession(), the companion through the session
+// listener or, when nothing was listening, takeRefreshedSession().
+//
+// Refreshes make a blocking HTTP call; never call them on the main thread.
+public final class HealthTokenManager {
+    private static final String TAG = "HealthTokenManager";
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final long REFRESH_MARGIN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    // Set when the companion refreshed and the web app has not picked the pair up yet
+    private static final String KEY_REFRESHED_NATIVELY = "session_refreshed_natively";
+
+    private static volatile HealthTokenManager instance;
+
+    private final HealthCredentialStore credentialStore;
+    private final OkHttpClient httpClient;
+    private volatile SessionListener sessionListener;
+
+    private HealthTokenManager(HealthCredentialStore credentialStore, OkHttpClient httpClient) {
+        this.credentialStore = credentialStore;
+        this.httpClient = httpClient;
+    }
+
+    public static HealthTokenManager getInstance(Context context) {
+        HealthTokenManager result = instance;
+        if (result == null) {
+            synchronized (HealthTokenManager.class) {
+                result = instance;
+                if (result == null) {
+                    result = new HealthTokenManager(HealthCredentialStore.getInstance(context), HealthHttpClient.get());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public static final class Session {
+        public final String accessToken;
+        public final String refreshToken;
+
+        Session(String accessToken, String refreshToken) {
+            this.accessToken = accessToken;
+            this.refreshToken = refreshToken;
+        }
+    }
+
+    // Called on the refreshing thread after the companion rotated the session.
+    public interface SessionListener {
+        void onSessionRefreshed(Session session);
+    }
+
+    public void setSessionListener(SessionListener sessionListener) {
+        this.sessionListener = sessionListener;
+    }
+
+    // An access token good for at least REFRESH_MARGIN_MILLIS, or null when
+    // there is no session or it can no longer be refreshed.
+    public synchronized String getValidToken() {
+        String token = credentialStore.getJwtToken();
+        long now = System.currentTimeMillis();
+        if (token != null && expiresAtMillis(token) - now > REFRESH_MARGIN_MILLIS) {
+            return token;
+        }
+
+        String refreshed = refresh();
+        if (refreshed != null) {
+            return refreshed;
+        }
+        // Token endpoint unreachable: a token that has not lapsed yet still works
+        return token != null && expiresAtMillis(token) > now ? token : null;
+    }
+
+    // A replacement for a token the server answered 401 to, or null if none can be had.
+    public synchronized String refreshAfterUnauthorized(String rejectedToken) {
+        String token = credentialStore.getJwtToken();
+        if (token != null && !token.equals(rejectedToken)
+                && expiresAtMillis(token) - System.currentTimeMillis() > REFRESH_MARGIN_MILLIS) {
+            // Refreshed by another caller since the request went out
+            return token;
+        }
+        return refresh();
+    }
+
+    // The session as the web app last saw it, after sign-in or its own refresh.
+    public synchronized void updateSession(String accessToken, String refreshToken) {
+        HealthCredentialStore.Editor editor = credentialStore.edit()
+            .putString(HealthCredentialStore.KEY_JWT_TOKEN, accessToken)
+            .putBoolean(KEY_REFRESHED_NATIVELY, false);
+        // Older launchers only pass the access token; keep whatever refresh token there is
+        if (refreshToken != null) {
+            editor.putString(HealthCredentialStore.KEY_REFRESH_TOKEN, refreshToken);
+        }
+        editor.apply();
+    }
+
+    public synchronized void clearSession() {
+        credentialStore.edit()
+            .remove(HealthCredentialStore.KEY_JWT_TOKEN)
+            .remove(HealthCredentialStore.KEY_REFRESH_TOKEN)
+            .putBoolean(KEY_REFRESHED_NATIVELY, false)
+            .apply();
+    }
+
+    // The pair the companion rotated to while the web app was not listening, once; null otherwise.
+    public synchronized Session takeRefreshedSession() {
+        if (!credentialStore.getBoolean(KEY_REFRESHED_NATIVELY, false)) {
+            return null;
+        }
+        credentialStore.edit()
+            .putBoolean(KEY_REFRESHED_NATIVELY, false)
+            .apply();
+        return new Session(credentialStore.getJwtToken(), credentialStore.getRefreshToken());
+    }
+
+    private String refresh() {
+        String refreshToken = credentialStore.getRefreshToken();
+        if (refreshToken == null) {
+            Log.w(TAG, "No refresh token, the app has to hand over a new session");
+            return null;
+        }
+
+        Request request;
+        try {
+            JSONObject body = new JSONObject().put("refresh_token", refreshToken);
+            request = new Request.Builder()
+                .url(HealthHttpClient.SUPABASE_URL + "/auth/v1/token?grant_type=refresh_token")
+                .post(RequestBody.create(body.toString(), JSON))
+                .addHeader("apikey", HealthHttpClient.SUPABASE_ANON_KEY)
+                .build();
+        } catch (JSONException e) {
+            Log.e(TAG, "Error building refresh request", e);
+            return null;
+        }
+
+        try (Response response = httpClient.newCall(request).execute()) {
+            String responseBody = response.body().string();
+            if (response.code() == 400 || response.code() == 401) {
+                // Revoked or already rotated away; retrying the same token cannot succeed
+                Log.w(TAG, "Refresh token rejected: " + response.code() + " " + responseBody);
+                credentialStore.edit()
+                    .remove(HealthCredentialStore.KEY_REFRESH_TOKEN)
+                    .apply();
+                return null;
+            }
+            if (!response.isSuccessful()) {
+                Log.w(TAG, "Token refresh failed: " + response.code());
+                return null;
+            }
+
+            JSONObject result = new JSONObject(responseBody);
+            Session session = new Session(result.getString("access_token"), result.getString("refresh_token"));
+            credentialStore.edit()
+                .putString(HealthCredentialStore.KEY_JWT_TOKEN, session.accessToken)
+                .putString(HealthCredentialStore.KEY_REFRESH_TOKEN, session.refreshToken)
+                .putBoolean(KEY_REFRESHED_NATIVELY, true)
+                .apply();
+            Log.d(TAG, "Session refreshed");
+
+            SessionListener listener = sessionListener;
+            if (listener != null) {
+                listener.onSessionRefreshed(session);
+            }
+            return session.accessToken;
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Error refreshing session", e);
+            return null;
+        }
+    }
+
+    // The exp claim in milliseconds; 0 for anything that is not a readable JWT,
+    // which makes it count as expired.
+    static long expiresAtMillis(String jwt) {
+        String[] parts = jwt.split("\\.");
+        if (parts.length < 2) {
+            return 0;
+        }
+        try {
+            byte[] payload = Base64.decode(parts[1], Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP);
+            return TimeUnit.SECONDS.toMillis(
+                new JSONObject(new String(payload, StandardCharsets.UTF_8)).optLong("exp", 0));
+        } catch (IllegalArgumentException | JSONException e) {
+            return 0;
+        }
+    }
+}
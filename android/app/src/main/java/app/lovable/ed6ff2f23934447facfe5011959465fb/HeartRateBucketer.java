@@ -0,0 +1,142 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import androidx.health.connect.client.HealthConnectClient;
+import androidx.health.connect.client.records.HeartRateRecord;
+import androidx.health.connect.client.records.metadata.DataOrigin;
+import androidx.health.connect.client.request.ReadRecordsRequest;
+import androidx.health.connect.client.response.ReadRecordsResponse;
+import androidx.health.connect.client.time.TimeRangeFilter;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import kotlin.coroutines.EmptyCoroutineContext;
+import kotlin.jvm.JvmClassMappingKt;
+import kotlinx.coroutines.BuildersKt;
+
+// Reads a day's heart rate samples page by page and reduces them into
+// fixed-width buckets in the same pass. Samples are never collected: each one
+// goes straight into primitive per-bucket accumulators that are sized for the
+// longest possible day and reused, so memory stays fixed no matter how many
+// samples a day has. Not thread-safe; use one instance per thread.
+public class HeartRateBucketer {
+    private static final int PAGE_SIZE = 500;
+    // A local day lasts up to 25 hours when clocks fall back
+    private static final int MAX_DAY_MINUTES = 25 * 60;
+
+    private final HealthConnectClient healthConnectClient;
+    private final int bucketMinutes;
+    private final long bucketSeconds;
+
+    private final int[] min;
+    private final int[] max;
+    private final long[] sum;
+    private final int[] count;
+
+    public HeartRateBucketer(HealthConnectClient healthConnectClient, int bucketMinutes) {
+        if (bucketMinutes <= 0 || bucketMinutes > 24 * 60) {
+            throw new IllegalArgumentException("Bucket size must be between 1 minute and 1 day: " + bucketMinutes);
+        }
+        this.healthConnectClient = healthConnectClient;
+        this.bucketMinutes = bucketMinutes;
+        this.bucketSeconds = bucketMinutes * 60L;
+
+        int buckets = (MAX_DAY_MINUTES + bucketMinutes - 1) / bucketMinutes;
+        this.min = new int[buckets];
+        this.max = new int[buckets];
+        this.sum = new long[buckets];
+        this.count = new int[buckets];
+    }
+
+    // Returns the day's series, or null when it has no samples.
+    public HeartRateSeries collectDay(LocalDate date, ZoneId zone) throws InterruptedException {
+        Instant start = date.atStartOfDay(zone).toInstant();
+        Instant end = date.plusDays(1).atStartOfDay(zone).toInstant();
+        long startSecond = start.getEpochSecond();
+        int bucketsInDay = (int) ((end.getEpochSecond() - startSecond + bucketSeconds - 1) / bucketSeconds);
+        Arrays.fill(count, 0, bucketsInDay, 0);
+
+        int usedBuckets = 0;
+        String pageToken = null;
+        do {
+            ReadRecordsRequest<HeartRateRecord> request = new ReadRecordsRequest<>(
+                JvmClassMappingKt.getKotlinClass(HeartRateRecord.class),
+                TimeRangeFilter.between(start, end),
+                Collections.<DataOrigin>emptySet(),
+                true,
+                PAGE_SIZE,
+                pageToken
+            );
+            ReadRecordsResponse<HeartRateRecord> response = BuildersKt.runBlocking(
+                EmptyCoroutineContext.INSTANCE,
+                (scope, continuation) -> healthConnectClient.readRecords(request, continuation)
+            );
+
+            for (HeartRateRecord record : response.getRecords()) {
+                List<HeartRateRecord.Sample> samples = record.getSamples();
+                for (int i = 0, n = samples.size(); i < n; i++) {
+                    HeartRateRecord.Sample sample = samples.get(i);
+                    // Records overlapping midnight carry samples from the neighbouring day
+                    long offset = sample.getTime().getEpochSecond() - startSecond;
+                    if (offset < 0) {
+                        continue;
+                    }
+                    int bucket = (int) (offset / bucketSeconds);
+                    if (bucket >= bucketsInDay) {
+                        continue;
+                    }
+
+                    int bpm = (int) sample.getBeatsPerMinute();
+                    if (count[bucket] == 0) {
+                        min[bucket] = bpm;
+                        max[bucket] = bpm;
+                        sum[bucket] = bpm;
+                        usedBuckets++;
+                    } else {
+                        if (bpm < min[bucket]) {
+                            min[bucket] = bpm;
+                        }
+                        if (bpm > max[bucket]) {
+                            max[bucket] = bpm;
+                        }
+                        sum[bucket] += bpm;
+                    }
+                    count[bucket]++;
+                }
+            }
+
+            pageToken = response.getPageToken();
+        } while (pageToken != null);
+
+        if (usedBuckets == 0) {
+            return null;
+        }
+        return compact(date, bucketsInDay, usedBuckets);
+    }
+
+    private HeartRateSeries compact(LocalDate date, int bucketsInDay, int usedBuckets) {
+        int[] offsets = new int[usedBuckets];
+        int[] bucketMin = new int[usedBuckets];
+        int[] bucketMax = new int[usedBuckets];
+        int[] bucketAvg = new int[usedBuckets];
+        int[] bucketCount = new int[usedBuckets];
+
+        int next = 0;
+        for (int bucket = 0; bucket < bucketsInDay; bucket++) {
+            if (count[bucket] == 0) {
+                continue;
+            }
+            offsets[next] = bucket;
+            bucketMin[next] = min[bucket];
+            bucketMax[next] = max[bucket];
+            bucketAvg[next] = (int) Math.round((double) sum[bucket] / count[bucket]);
+            bucketCount[next] = count[bucket];
+            next++;
+        }
+        return new HeartRateSeries(date, bucketMinutes, offsets, bucketMin, bucketMax, bucketAvg, bucketCount);
+    }
+}
@@ -0,0 +1,90 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.Random;
+
+// Stops uploads while health-sync is unhealthy. After FAILURE_THRESHOLD runs
+// in a row end in server errors the breaker opens for a jittered cool-down
+// that doubles with every trip; once it has passed, one run may try again and
+// its result closes or reopens the breaker. State lives in preferences, since
+// every sync is a new worker and possibly a new process.
+public final class SyncCircuitBreaker {
+    private static final String TAG = "SyncCircuitBreaker";
+    private static final String PREFS_NAME = "health_sync_backoff";
+    private static final String KEY_FAILURES = "consecutive_failures";
+    private static final String KEY_TRIPS = "trips";
+    private static final String KEY_OPEN_UNTIL = "open_until";
+
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long BASE_COOL_DOWN_MILLIS = 5 * 60 * 1000L;
+    private static final long MAX_COOL_DOWN_MILLIS = 12 * 60 * 60 * 1000L;
+
+    private static volatile SyncCircuitBreaker instance;
+
+    private final SharedPreferences prefs;
+    private final Random random = new Random();
+
+    private SyncCircuitBreaker(Context context) {
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public static SyncCircuitBreaker getInstance(Context context) {
+        SyncCircuitBreaker result = instance;
+        if (result == null) {
+            synchronized (SyncCircuitBreaker.class) {
+                result = instance;
+                if (result == null) {
+                    result = new SyncCircuitBreaker(context.getApplicationContext());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    // 0 when uploads may go ahead, otherwise when the breaker lets the next one through.
+    public synchronized long blockedUntil(long nowMillis) {
+        long openUntil = prefs.getLong(KEY_OPEN_UNTIL, 0);
+        return openUntil > nowMillis ? openUntil : 0;
+    }
+
+    public synchronized void recordSuccess() {
+        if (prefs.getInt(KEY_FAILURES, 0) == 0 && prefs.getInt(KEY_TRIPS, 0) == 0) {
+            return;
+        }
+        prefs.edit()
+            .putInt(KEY_FAILURES, 0)
+            .putInt(KEY_TRIPS, 0)
+            .putLong(KEY_OPEN_UNTIL, 0)
+            .apply();
+        Log.d(TAG, "Health sync backend healthy again, breaker closed");
+    }
+
+    // A run that failed against the server: 5xx, 429 or no response at all.
+    // Returns when uploads may resume, 0 if the breaker stays closed.
+    public synchronized long recordFailure(long nowMillis, long retryAfterMillis) {
+        int failures = prefs.getInt(KEY_FAILURES, 0) + 1;
+        int trips = prefs.getInt(KEY_TRIPS, 0);
+        // A failed trial run after a cool-down reopens straight away
+        boolean open = failures >= FAILURE_THRESHOLD || trips > 0;
+
+        long openUntil = 0;
+        if (open) {
+            long coolDown = BASE_COOL_DOWN_MILLIS
+                + SyncBackoff.fullJitterMillis(trips, BASE_COOL_DOWN_MILLIS, MAX_COOL_DOWN_MILLIS, random);
+            openUntil = nowMillis + Math.max(coolDown, retryAfterMillis);
+            trips++;
+            Log.w(TAG, "Health sync backend unhealthy, pausing uploads for "
+                + (openUntil - nowMillis) / 1000 + " s");
+        }
+        prefs.edit()
+            .putInt(KEY_FAILURES, failures)
+            .putInt(KEY_TRIPS, trips)
+            .putLong(KEY_OPEN_UNTIL, openUntil)
+            .apply();
+        return openUntil;
+    }
+}
@@ -0,0 +1,131 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+// What health-sync last acknowledged storing, as one DayDigest per (day,
+// metric). Only digests echoed back by the server are recorded, so a metric
+// the server never confirmed keeps being sent. Rows older than RETENTION_DAYS
+// are pruned; those days are past any sync window.
+//
+// Rows are keyed by device ID: they describe what this registration stored,
+// and a re-registration (another account, say) starts from an empty ledger.
+// Recording for one device drops the rows of any other.
+public class SyncDigestLedger extends SQLiteOpenHelper {
+    private static final String DATABASE_NAME = "health_sync_ledger.db";
+    private static final int DATABASE_VERSION = 2;
+    private static final int RETENTION_DAYS = 400;
+
+    private static final String TABLE = "acked_digests";
+    private static final String COL_DEVICE_ID = "device_id";
+    private static final String COL_DAY = "day";
+    private static final String COL_METRIC = "metric";
+    private static final String COL_DIGEST = "digest";
+
+    private static volatile SyncDigestLedger instance;
+
+    private SyncDigestLedger(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    public static SyncDigestLedger getInstance(Context context) {
+        SyncDigestLedger result = instance;
+        if (result == null) {
+            synchronized (SyncDigestLedger.class) {
+                result = instance;
+                if (result == null) {
+                    result = new SyncDigestLedger(context.getApplicationContext());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+            + COL_DEVICE_ID + " TEXT NOT NULL, "
+            + COL_DAY + " TEXT NOT NULL, "
+            + COL_METRIC + " TEXT NOT NULL, "
+            + COL_DIGEST + " INTEGER NOT NULL, "
+            + "PRIMARY KEY (" + COL_DEVICE_ID + ", " + COL_DAY + ", " + COL_METRIC + ")) WITHOUT ROWID");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Version 1 rows do not say which registration they belong to; losing
+        // them only means those days are sent once more
+        if (oldVersion < 2) {
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+            onCreate(db);
+        }
+    }
+
+    // Acknowledged digests by metric, for each of the given days that has any.
+    public Map<LocalDate, Map<String, Long>> get(String deviceId, Collection<LocalDate> days) {
+        Map<LocalDate, Map<String, Long>> digests = new HashMap<>();
+        if (days.isEmpty()) {
+            return digests;
+        }
+
+        LocalDate first = null;
+        LocalDate last = null;
+        for (LocalDate day : days) {
+            first = first == null || day.isBefore(first) ? day : first;
+            last = last == null || day.isAfter(last) ? day : last;
+        }
+        // ISO dates sort as text, so one range query covers the batch
+        try (Cursor cursor = getReadableDatabase().query(TABLE, null,
+                COL_DEVICE_ID + " = ? AND " + COL_DAY + " BETWEEN ? AND ?",
+                new String[] { deviceId, first.toString(), last.toString() },
+                null, null, null)) {
+            int dayIndex = cursor.getColumnIndexOrThrow(COL_DAY);
+            int metricIndex = cursor.getColumnIndexOrThrow(COL_METRIC);
+            int digestIndex = cursor.getColumnIndexOrThrow(COL_DIGEST);
+            while (cursor.moveToNext()) {
+                LocalDate day = LocalDate.parse(cursor.getString(dayIndex));
+                if (days.contains(day)) {
+                    digests.computeIfAbsent(day, d -> new HashMap<>())
+                        .put(cursor.getString(metricIndex), cursor.getLong(digestIndex));
+                }
+            }
+        }
+        return digests;
+    }
+
+    // Called from OkHttp's threads as batches are acknowledged.
+    public void record(String deviceId, Map<LocalDate, Map<String, Long>> digests) {
+        if (digests.isEmpty()) {
+            return;
+        }
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (Map.Entry<LocalDate, Map<String, Long>> day : digests.entrySet()) {
+                for (Map.Entry<String, Long> metric : day.getValue().entrySet()) {
+                    values.put(COL_DEVICE_ID, deviceId);
+                    values.put(COL_DAY, day.getKey().toString());
+                    values.put(COL_METRIC, metric.getKey());
+                    values.put(COL_DIGEST, metric.getValue());
+                    db.insertWithOnConflict(TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                }
+            }
+            db.delete(TABLE, COL_DEVICE_ID + " != ? OR " + COL_DAY + " < ?",
+                new String[] { deviceId, LocalDate.now().minusDays(RETENTION_DAYS).toString() });
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
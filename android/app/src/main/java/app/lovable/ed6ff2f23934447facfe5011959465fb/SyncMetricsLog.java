@@ -0,0 +1,122 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+// Ring buffer of the last CAPACITY sync runs in a small private file. Records
+// have a fixed size, so appending overwrites one slot and rewrites the header
+// and the file never grows past about 25 KiB.
+public final class SyncMetricsLog {
+    private static final String TAG = "SyncMetricsLog";
+    private static final String FILE_NAME = "sync_metrics.bin";
+    private static final int VERSION = 1;
+    private static final int CAPACITY = 200;
+
+    // version, capacity, next slot, record count
+    private static final int HEADER_BYTES = 4 * 4;
+    private static final int RECORD_BYTES = SyncMetrics.FIELD_COUNT * 8;
+
+    private static volatile SyncMetricsLog instance;
+
+    private final File file;
+
+    private SyncMetricsLog(Context context) {
+        this.file = new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    public static SyncMetricsLog getInstance(Context context) {
+        SyncMetricsLog result = instance;
+        if (result == null) {
+            synchronized (SyncMetricsLog.class) {
+                result = instance;
+                if (result == null) {
+                    result = new SyncMetricsLog(context.getApplicationContext());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public synchronized void append(SyncMetrics metrics) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            int[] header = readHeader(raf);
+            int next = header[0];
+            int count = header[1];
+
+            ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+            for (long field : metrics.toFields()) {
+                record.putLong(field);
+            }
+            raf.seek(HEADER_BYTES + (long) next * RECORD_BYTES);
+            raf.write(record.array());
+
+            writeHeader(raf, (next + 1) % CAPACITY, Math.min(count + 1, CAPACITY));
+        } catch (IOException e) {
+            // Metrics are diagnostics; never let them fail a sync
+            Log.w(TAG, "Could not record sync metrics", e);
+        }
+    }
+
+    // Newest run first.
+    public synchronized List<SyncMetrics> read(int limit) {
+        List<SyncMetrics> runs = new ArrayList<>();
+        if (!file.exists()) {
+            return runs;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            int[] header = readHeader(raf);
+            int next = header[0];
+            int count = Math.min(header[1], limit);
+
+            byte[] record = new byte[RECORD_BYTES];
+            long[] fields = new long[SyncMetrics.FIELD_COUNT];
+            for (int i = 1; i <= count; i++) {
+                int slot = Math.floorMod(next - i, CAPACITY);
+                raf.seek(HEADER_BYTES + (long) slot * RECORD_BYTES);
+                raf.readFully(record);
+
+                ByteBuffer buffer = ByteBuffer.wrap(record);
+                for (int f = 0; f < fields.length; f++) {
+                    fields[f] = buffer.getLong();
+                }
+                runs.add(SyncMetrics.fromFields(fields));
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read sync metrics", e);
+        }
+        return runs;
+    }
+
+    // Returns {next slot, record count}; a missing or foreign header reads as empty.
+    private static int[] readHeader(RandomAccessFile raf) throws IOException {
+        if (raf.length() < HEADER_BYTES) {
+            return new int[] { 0, 0 };
+        }
+        raf.seek(0);
+        int version = raf.readInt();
+        int capacity = raf.readInt();
+        int next = raf.readInt();
+        int count = raf.readInt();
+        if (version != VERSION || capacity != CAPACITY || next < 0 || next >= CAPACITY || count < 0 || count > CAPACITY) {
+            return new int[] { 0, 0 };
+        }
+        return new int[] { next, count };
+    }
+
+    private static void writeHeader(RandomAccessFile raf, int next, int count) throws IOException {
+        raf.seek(0);
+        raf.writeInt(VERSION);
+        raf.writeInt(CAPACITY);
+        raf.writeInt(next);
+        raf.writeInt(count);
+    }
+}
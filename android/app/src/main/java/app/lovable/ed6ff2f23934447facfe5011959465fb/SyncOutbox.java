@@ -0,0 +1,226 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Durable queue of collected days waiting to be uploaded. There is at most
+// one row per day: every collection re-aggregates the whole day, so queuing
+// it again replaces the pending row, including metrics that have since
+// disappeared. Retries and flaky networks never multiply what is sent.
+public class SyncOutbox extends SQLiteOpenHelper {
+    private static final String DATABASE_NAME = "health_sync_outbox.db";
+    private static final int DATABASE_VERSION = 2;
+
+    private static final String TABLE = "outbox_days";
+    private static final String COL_DAY = "day";
+    private static final String COL_STEPS = "steps";
+    private static final String COL_HEART_RATE_AVG = "heart_rate_avg";
+    private static final String COL_HEART_RATE_MIN = "heart_rate_min";
+    private static final String COL_HEART_RATE_MAX = "heart_rate_max";
+    private static final String COL_SLEEP_HOURS = "sleep_hours";
+    private static final String COL_CALORIES = "calories";
+    private static final String COL_HEART_RATE_SERIES = "heart_rate_series";
+    private static final String COL_REVISION = "revision";
+
+    private static volatile SyncOutbox instance;
+
+    private SyncOutbox(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    public static SyncOutbox getInstance(Context context) {
+        SyncOutbox result = instance;
+        if (result == null) {
+            synchronized (SyncOutbox.class) {
+                result = instance;
+                if (result == null) {
+                    result = new SyncOutbox(context.getApplicationContext());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+            + COL_DAY + " TEXT PRIMARY KEY, "
+            + COL_STEPS + " INTEGER, "
+            + COL_HEART_RATE_AVG + " INTEGER, "
+            + COL_HEART_RATE_MIN + " INTEGER, "
+            + COL_HEART_RATE_MAX + " INTEGER, "
+            + COL_SLEEP_HOURS + " REAL, "
+            + COL_CALORIES + " INTEGER, "
+            + COL_HEART_RATE_SERIES + " BLOB, "
+            + COL_REVISION + " INTEGER NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Queued days must survive upgrades, so migrate in place
+        if (oldVersion < 2) {
+            db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN " + COL_HEART_RATE_SERIES + " BLOB");
+        }
+    }
+
+    public void enqueue(List<DayAggregate> days) {
+        if (days.isEmpty()) {
+            return;
+        }
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            long revision = DatabaseUtils.longForQuery(db, "SELECT IFNULL(MAX(" + COL_REVISION + "), 0) FROM " + TABLE, null);
+            for (DayAggregate day : days) {
+                db.insertWithOnConflict(TABLE, null, toValues(day, ++revision), SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Oldest days first.
+    public List<Entry> peek(int limit) {
+        List<Entry> entries = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE, null, null, null, null, null,
+                COL_DAY + " ASC", String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                entries.add(new Entry(readDay(cursor), cursor.getLong(cursor.getColumnIndexOrThrow(COL_REVISION))));
+            }
+        }
+        return entries;
+    }
+
+    // Drops acknowledged entries. A day that was queued again while its upload
+    // was in flight has a newer revision and stays queued.
+    public void remove(List<Entry> entries) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (Entry entry : entries) {
+                db.delete(TABLE, COL_DAY + " = ? AND " + COL_REVISION + " = ?",
+                    new String[] { entry.day.date.toString(), String.valueOf(entry.revision) });
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static ContentValues toValues(DayAggregate day, long revision) {
+        ContentValues values = new ContentValues();
+        values.put(COL_DAY, day.date.toString());
+        values.put(COL_STEPS, day.steps);
+        values.put(COL_HEART_RATE_AVG, day.heartRateAvg);
+        values.put(COL_HEART_RATE_MIN, day.heartRateMin);
+        values.put(COL_HEART_RATE_MAX, day.heartRateMax);
+        values.put(COL_SLEEP_HOURS, day.sleepHours);
+        values.put(COL_CALORIES, day.calories);
+        values.put(COL_HEART_RATE_SERIES, day.heartRateSeries == null ? null : encodeSeries(day.heartRateSeries));
+        values.put(COL_REVISION, revision);
+        return values;
+    }
+
+    private static DayAggregate readDay(Cursor cursor) {
+        LocalDate date = LocalDate.parse(cursor.getString(cursor.getColumnIndexOrThrow(COL_DAY)));
+        int seriesIndex = cursor.getColumnIndexOrThrow(COL_HEART_RATE_SERIES);
+        return new DayAggregate(
+            date,
+            getLong(cursor, COL_STEPS),
+            getLong(cursor, COL_HEART_RATE_AVG),
+            getLong(cursor, COL_HEART_RATE_MIN),
+            getLong(cursor, COL_HEART_RATE_MAX),
+            getDouble(cursor, COL_SLEEP_HOURS),
+            getLong(cursor, COL_CALORIES),
+            cursor.isNull(seriesIndex) ? null : decodeSeries(date, cursor.getBlob(seriesIndex))
+        );
+    }
+
+    private static byte[] encodeSeries(HeartRateSeries series) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 + series.size() * 20);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(series.bucketMinutes);
+            out.writeInt(series.size());
+            for (int i = 0; i < series.size(); i++) {
+                out.writeInt(series.offsets[i]);
+                out.writeInt(series.min[i]);
+                out.writeInt(series.max[i]);
+                out.writeInt(series.avg[i]);
+                out.writeInt(series.count[i]);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static HeartRateSeries decodeSeries(LocalDate date, byte[] blob) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(blob))) {
+            int bucketMinutes = in.readInt();
+            int size = in.readInt();
+            int[] offsets = new int[size];
+            int[] min = new int[size];
+            int[] max = new int[size];
+            int[] avg = new int[size];
+            int[] count = new int[size];
+            for (int i = 0; i < size; i++) {
+                offsets[i] = in.readInt();
+                min[i] = in.readInt();
+                max[i] = in.readInt();
+                avg[i] = in.readInt();
+                count[i] = in.readInt();
+            }
+            return new HeartRateSeries(date, bucketMinutes, offsets, min, max, avg, count);
+        } catch (IOException e) {
+            // A damaged series only costs the intraday detail, the daily values still go out
+            return null;
+        }
+    }
+
+    private static Long getLong(Cursor cursor, String column) {
+        int index = cursor.getColumnIndexOrThrow(column);
+        return cursor.isNull(index) ? null : cursor.getLong(index);
+    }
+
+    private static Double getDouble(Cursor cursor, String column) {
+        int index = cursor.getColumnIndexOrThrow(column);
+        return cursor.isNull(index) ? null : cursor.getDouble(index);
+    }
+
+    public static class Entry {
+        public final DayAggregate day;
+        final long revision;
+
+        Entry(DayAggregate day, long revision) {
+            this.day = day;
+            this.revision = revision;
+        }
+
+        // Same queued row, sending a reduced day
+        public Entry withDay(DayAggregate day) {
+            return new Entry(day, revision);
+        }
+
+        // A day sent without going through the outbox; its idempotency key then
+        // rests on the content alone
+        public static Entry unqueued(DayAggregate day) {
+            return new Entry(day, 0);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.GzipSink;
+import okio.Okio;
+import okio.Sink;
+
+// Sync body that is serialized straight into the connection's sink. Formats
+// that gzip must be sent with a "Content-Encoding: gzip" header.
+public class SyncRequestBody extends RequestBody {
+    private final SyncPayload payload;
+    private final SyncWireFormat format;
+    private volatile long bytesWritten;
+
+    public SyncRequestBody(SyncPayload payload, SyncWireFormat format) {
+        this.payload = payload;
+        this.format = format;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return format.mediaType;
+    }
+
+    @Override
+    public long contentLength() {
+        // Unknown up front, the body goes out chunked
+        return -1;
+    }
+
+    // Bytes handed to the connection by the last write, after compression.
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        bytesWritten = 0;
+        Sink counted = new ForwardingSink(sink) {
+            @Override
+            public void write(Buffer source, long byteCount) throws IOException {
+                super.write(source, byteCount);
+                bytesWritten += byteCount;
+            }
+        };
+
+        if (!format.gzip) {
+            BufferedSink plainSink = Okio.buffer(counted);
+            format.write(payload, plainSink.outputStream());
+            plainSink.flush();
+            return;
+        }
+        BufferedSink gzipSink = Okio.buffer(new GzipSink(counted));
+        format.write(payload, gzipSink.outputStream());
+        gzipSink.close();
+    }
+}
@@ -0,0 +1,241 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.OutOfQuotaPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+// Single entry point for health sync work. Everything is enqueued under a
+// unique name, so repeated calls coalesce instead of stacking workers: a
+// device has at most one periodic sync, one pending manual sync, one
+// pending retry and one history backfill chain.
+//
+// The periodic sync runs at a time of day derived from the device ID and
+// retries are scheduled by the worker with jittered delays, so the fleet does
+// not hit health-sync in waves.
+public final class SyncScheduler {
+    private static final String TAG = "SyncScheduler";
+
+    public static final String TAG_HEALTH_SYNC = "health_sync";
+    public static final String WORK_PERIODIC = "health_sync_periodic";
+    public static final String WORK_MANUAL = "health_sync_manual";
+    public static final String WORK_RETRY = "health_sync_retry";
+    public static final String WORK_DEFERRED = "health_sync_deferred";
+    public static final String WORK_BACKFILL = "health_sync_backfill";
+
+    private static final long PERIODIC_INTERVAL_HOURS = 24;
+    private static final long PERIODIC_FLEX_HOURS = 6;
+
+    private static final String PREFS_NAME = "health_sync_scheduler";
+    private static final String KEY_LEGACY_WORK_CANCELLED = "legacy_work_cancelled";
+    private static final String KEY_SCHEDULE_VERSION = "schedule_version";
+    // Bumped when the periodic request changes shape and existing schedules must be replaced
+    private static final int SCHEDULE_VERSION = 2;
+
+    private SyncScheduler() {
+    }
+
+    // Safe to call on every launch: an existing schedule is kept as is.
+    public static void schedulePeriodic(Context context, String deviceId) {
+        cancelLegacyWork(context);
+        SharedPreferences prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        boolean outdated = prefs.getInt(KEY_SCHEDULE_VERSION, 1) < SCHEDULE_VERSION;
+
+        // Background syncs wait for Wi-Fi and a healthy battery
+        Constraints constraints = new Constraints.Builder()
+            .setRequiredNetworkType(NetworkType.UNMETERED)
+            .setRequiresBatteryNotLow(true)
+            .build();
+
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(
+            HealthSyncService.class,
+            PERIODIC_INTERVAL_HOURS, TimeUnit.HOURS,
+            PERIODIC_FLEX_HOURS, TimeUnit.HOURS
+        )
+            .setConstraints(constraints)
+            .setInitialDelay(delayUntilDeviceSlot(deviceId, ZonedDateTime.now()).toMillis(), TimeUnit.MILLISECONDS)
+            .addTag(TAG_HEALTH_SYNC)
+            .build();
+
+        // Schedules from before the per-device slot are replaced once
+        WorkManager.getInstance(context)
+            .enqueueUniquePeriodicWork(WORK_PERIODIC,
+                outdated ? ExistingPeriodicWorkPolicy.CANCEL_AND_REENQUEUE : ExistingPeriodicWorkPolicy.KEEP,
+                request);
+        if (outdated) {
+            prefs.edit().putInt(KEY_SCHEDULE_VERSION, SCHEDULE_VERSION).apply();
+        }
+
+        Log.d(TAG, "Periodic health sync scheduled");
+    }
+
+    // Runs one upload attempt after delayMillis. A retry scheduled from the
+    // retry work itself is appended, since replacing would cancel the caller.
+    public static void scheduleRetry(Context context, long delayMillis, int attempt, boolean fromRetryWork) {
+        Constraints constraints = new Constraints.Builder()
+            .setRequiredNetworkType(NetworkType.CONNECTED)
+            .build();
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(HealthSyncService.class)
+            .setConstraints(constraints)
+            .setInitialDelay(delayMillis, TimeUnit.MILLISECONDS)
+            .setInputData(new Data.Builder()
+                .putInt(HealthSyncService.INPUT_RETRY_ATTEMPT, attempt)
+                .build())
+            .addTag(TAG_HEALTH_SYNC)
+            .build();
+
+        WorkManager.getInstance(context)
+            .enqueueUniqueWork(WORK_RETRY,
+                fromRetryWork ? ExistingWorkPolicy.APPEND_OR_REPLACE : ExistingWorkPolicy.REPLACE,
+                request);
+
+        Log.d(TAG, "Health sync retry " + attempt + " in " + delayMillis / 1000 + " s");
+    }
+
+    // Taps while a manual sync is still pending or running join that one.
+    public static void requestManualSync(Context context) {
+        cancelLegacyWork(context);
+
+        // The user is waiting, so any network will do
+        Constraints constraints = new Constraints.Builder()
+            .setRequiredNetworkType(NetworkType.CONNECTED)
+            .build();
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(HealthSyncService.class)
+            .setConstraints(constraints)
+            .setExpedited(OutOfQuotaPolicy.RUN_AS_NON_EXPEDITED_WORK_REQUEST)
+            .addTag(TAG_HEALTH_SYNC)
+            .build();
+
+        WorkManager.getInstance(context)
+            .enqueueUniqueWork(WORK_MANUAL, ExistingWorkPolicy.KEEP, request);
+
+        Log.d(TAG, "Manual health sync requested");
+    }
+
+    // A full run (collect and upload) once the read quota has refilled for the
+    // days an earlier run deferred. Any pending deferred run is replaced, as the
+    // new one reads every deferred day; only a deferred run chaining the next
+    // appends, since replacing would cancel the caller.
+    public static void scheduleDeferredReads(Context context, long delayMillis, boolean fromDeferredWork) {
+        Constraints constraints = new Constraints.Builder()
+            .setRequiredNetworkType(NetworkType.CONNECTED)
+            .setRequiresBatteryNotLow(true)
+            .build();
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(HealthSyncService.class)
+            .setConstraints(constraints)
+            .setInitialDelay(delayMillis, TimeUnit.MILLISECONDS)
+            .setInputData(new Data.Builder()
+                .putBoolean(HealthSyncService.INPUT_DEFERRED_RUN, true)
+                .build())
+            .addTag(TAG_HEALTH_SYNC)
+            .build();
+
+        WorkManager.getInstance(context)
+            .enqueueUniqueWork(WORK_DEFERRED,
+                fromDeferredWork ? ExistingWorkPolicy.APPEND_OR_REPLACE : ExistingWorkPolicy.REPLACE,
+                request);
+
+        Log.d(TAG, "Deferred health reads in " + delayMillis / 1000 + " s");
+    }
+
+    // Starts uploading history back to horizonDays ago. A chain already under
+    // way is left alone unless restart is set, as after a new registration.
+    public static void startBackfill(Context context, int horizonDays, boolean restart) {
+        enqueueBackfill(context, horizonDays, 0, 0,
+            restart ? ExistingWorkPolicy.REPLACE : ExistingWorkPolicy.KEEP);
+        Log.d(TAG, "Health history backfill started, " + horizonDays + " days");
+    }
+
+    // The next link of the backfill chain, appended by the running link.
+    public static void scheduleBackfillChunk(Context context, int horizonDays, long delayMillis, int attempt) {
+        enqueueBackfill(context, horizonDays, delayMillis, attempt, ExistingWorkPolicy.APPEND_OR_REPLACE);
+        Log.d(TAG, "Next backfill chunk in " + delayMillis / 1000 + " s");
+    }
+
+    private static void enqueueBackfill(Context context, int horizonDays, long delayMillis, int attempt,
+                                        ExistingWorkPolicy policy) {
+        // History is never urgent: Wi-Fi, a healthy battery and free storage
+        Constraints constraints = new Constraints.Builder()
+            .setRequiredNetworkType(NetworkType.UNMETERED)
+            .setRequiresBatteryNotLow(true)
+            .setRequiresStorageNotLow(true)
+            .build();
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(HealthBackfillWorker.class)
+            .setConstraints(constraints)
+            .setInitialDelay(delayMillis, TimeUnit.MILLISECONDS)
+            .setInputData(new Data.Builder()
+                .putInt(HealthBackfillWorker.INPUT_HORIZON_DAYS, horizonDays)
+                .putInt(HealthBackfillWorker.INPUT_ATTEMPT, attempt)
+                .build())
+            .addTag(TAG_HEALTH_SYNC)
+            .build();
+
+        WorkManager.getInstance(context)
+            .enqueueUniqueWork(WORK_BACKFILL, policy, request);
+    }
+
+    // Whether a manual, periodic, retry or deferred sync is running right now.
+    static boolean isRegularSyncRunning(Context context) throws ExecutionException, InterruptedException {
+        WorkManager workManager = WorkManager.getInstance(context);
+        for (String work : new String[] { WORK_MANUAL, WORK_PERIODIC, WORK_RETRY, WORK_DEFERRED }) {
+            List<WorkInfo> infos = workManager.getWorkInfosForUniqueWork(work).get();
+            for (WorkInfo info : infos) {
+                if (info.getState() == WorkInfo.State.RUNNING) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public static void cancelAll(Context context) {
+        WorkManager.getInstance(context)
+            .cancelAllWorkByTag(TAG_HEALTH_SYNC);
+        Log.d(TAG, "All health sync work cancelled");
+    }
+
+    // Time until this device's slot in the day comes round next. Periodic runs
+    // keep that phase, give or take the flex window and the constraints.
+    static Duration delayUntilDeviceSlot(String deviceId, ZonedDateTime now) {
+        long offset = SyncBackoff.deviceOffsetMillis(deviceId, TimeUnit.DAYS.toMillis(1));
+        ZonedDateTime slot = now.toLocalDate().atStartOfDay(now.getZone()).plus(Duration.ofMillis(offset));
+        if (!slot.isAfter(now)) {
+            slot = slot.plusDays(1);
+        }
+        return Duration.between(now, slot);
+    }
+
+    // Earlier versions enqueued untagged periodic work on every sync request.
+    // WorkManager tags all work with the worker class, which is the only handle
+    // on those, so drop them once before the unique work takes over.
+    private static void cancelLegacyWork(Context context) {
+        SharedPreferences prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (prefs.getBoolean(KEY_LEGACY_WORK_CANCELLED, false)) {
+            return;
+        }
+        WorkManager.getInstance(context)
+            .cancelAllWorkByTag(HealthSyncService.class.getName());
+        prefs.edit().putBoolean(KEY_LEGACY_WORK_CANCELLED, true).apply();
+        Log.d(TAG, "Cancelled legacy health sync work");
+    }
+}
@@ -0,0 +1,390 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+// Uploads queued days to health-sync as independent batches. Each batch stays
+// under a byte budget, carries its own signature and idempotency key, and up
+// to maxInFlight batches share the connection at once. The server answers
+// every batch on its own, and within a batch lists the days it stored, so a
+// partial failure only leaves the days it could not store queued. Days it
+// rejects as invalid (a 422) are reported apart, since resending cannot help.
+//
+// Bodies start out as gzipped JSON and switch to the columnar encoding once a
+// health-sync response lists it in Accept-Post; a 415 switches back.
+//
+// A 429 or 503 stops the remaining batches of the upload, and the longest
+// Retry-After seen is kept for the caller's backoff. A 401 stops them too,
+// but is not the server's fault: the caller refreshes the token and resends.
+//
+// The digests health-sync returns for an accepted batch go into the digest
+// ledger, if one is set, so unchanged days can be left out next time.
+public class SyncUploader {
+    private static final String TAG = "SyncUploader";
+
+    // Shared by every upload in the process, the endpoint is the same
+    private static volatile SyncWireFormat wireFormat = SyncWireFormat.JSON;
+
+    private final OkHttpClient httpClient;
+    private final int maxInFlight;
+    private final long maxBatchBytes;
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicInteger batchCount = new AtomicInteger();
+    private final AtomicInteger failedBatchCount = new AtomicInteger();
+    private final AtomicLong httpMillis = new AtomicLong();
+    private final AtomicLong httpMaxMillis = new AtomicLong();
+    private final AtomicLong retryAfterMillis = new AtomicLong(-1);
+    private final List<SyncOutbox.Entry> rejected = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean serverUnhealthy;
+    private volatile boolean throttled;
+    private volatile boolean unauthorized;
+    private long signNanos;
+    private volatile BatchListener batchListener;
+    private volatile SyncDigestLedger digestLedger;
+
+    public SyncUploader(OkHttpClient httpClient, int maxInFlight, long maxBatchBytes) {
+        this.httpClient = httpClient;
+        this.maxInFlight = maxInFlight;
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    // Called from OkHttp's threads as each batch finishes.
+    public void setBatchListener(BatchListener batchListener) {
+        this.batchListener = batchListener;
+    }
+
+    public void setDigestLedger(SyncDigestLedger digestLedger) {
+        this.digestLedger = digestLedger;
+    }
+
+    // Request body bytes sent so far by this uploader, as they went on the wire.
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public int getBatchCount() {
+        return batchCount.get();
+    }
+
+    public int getFailedBatchCount() {
+        return failedBatchCount.get();
+    }
+
+    // Serializing each batch into the MAC, on the calling thread.
+    public long getSignMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(signNanos);
+    }
+
+    // Request sent to response headers received, summed over batches.
+    public long getHttpMillis() {
+        return httpMillis.get();
+    }
+
+    public long getHttpMaxMillis() {
+        return httpMaxMillis.get();
+    }
+
+    // The longest Retry-After of any response, -1 if none carried one.
+    public long getRetryAfterMillis() {
+        return retryAfterMillis.get();
+    }
+
+    // Whether any batch failed on the server's side: no response, 429 or 5xx.
+    public boolean isServerUnhealthy() {
+        return serverUnhealthy;
+    }
+
+    // Whether the last upload() had a batch refused with 401.
+    public boolean isUnauthorized() {
+        return unauthorized;
+    }
+
+    // Entries the last upload() had refused as invalid; neither acknowledged nor worth resending.
+    public List<SyncOutbox.Entry> getRejected() {
+        synchronized (rejected) {
+            return new ArrayList<>(rejected);
+        }
+    }
+
+    // Returns the entries the server acknowledged.
+    public List<SyncOutbox.Entry> upload(String deviceId, String hmacSecret, String jwtToken,
+                                         List<SyncOutbox.Entry> entries) throws IOException, InterruptedException {
+        unauthorized = false;
+        rejected.clear();
+        List<List<SyncOutbox.Entry>> batches = split(deviceId, entries);
+        List<SyncOutbox.Entry> acknowledged = Collections.synchronizedList(new ArrayList<>());
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        CountDownLatch done = new CountDownLatch(batches.size());
+
+        // The signer is thread-confined, so every batch is signed here before it is handed off
+        SyncRequestSigner signer = SyncRequestSigner.forSecret(hmacSecret);
+
+        for (List<SyncOutbox.Entry> batch : batches) {
+            if (throttled || unauthorized) {
+                // The server asked for a pause or refused the token; unsent batches stay queued
+                done.countDown();
+                continue;
+            }
+            SyncPayload payload = toPayload(deviceId, batch);
+            SyncWireFormat format = wireFormat;
+            // Signed over the uncompressed body in the format that is sent
+            long signStart = System.nanoTime();
+            format.write(payload, signer.signingStream());
+            String signature = signer.finish();
+            signNanos += System.nanoTime() - signStart;
+
+            SyncRequestBody body = new SyncRequestBody(payload, format);
+            Request.Builder builder = new Request.Builder()
+                .url(HealthHttpClient.API_BASE_URL + "/health-sync")
+                .post(body)
+                .addHeader("Authorization", "Bearer " + jwtToken)
+                .addHeader("X-Signature", "sha256=" + signature)
+                .addHeader("X-Idempotency-Key", idempotencyKey(signature, batch));
+            if (format.gzip) {
+                builder.addHeader("Content-Encoding", "gzip");
+            }
+            Request request = builder.build();
+
+            inFlight.acquire();
+            httpClient.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    Log.e(TAG, "Batch upload failed", e);
+                    serverUnhealthy = true;
+                    finish(0);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    List<SyncOutbox.Entry> stored = Collections.emptyList();
+                    try (Response ignored = response) {
+                        long latency = response.receivedResponseAtMillis() - response.sentRequestAtMillis();
+                        httpMillis.addAndGet(latency);
+                        httpMaxMillis.accumulateAndGet(latency, Math::max);
+                        negotiate(response);
+                        backOff(response);
+                        String responseBody = response.body().string();
+                        // Days stored before another day in the batch failed count as acknowledged
+                        stored = storedEntries(batch, response.isSuccessful(), responseBody);
+                        recordDigests(deviceId, responseBody);
+                        acknowledged.addAll(stored);
+                        rejected.addAll(invalidEntries(batch, responseBody));
+                        if (stored.size() < batch.size()) {
+                            Log.e(TAG, "Batch rejected: " + response.code() + " " + responseBody);
+                        }
+                    } catch (IOException e) {
+                        Log.e(TAG, "Error reading batch response", e);
+                    } finally {
+                        finish(stored.size());
+                    }
+                }
+
+                private void finish(int storedDays) {
+                    batchCount.incrementAndGet();
+                    if (storedDays < batch.size()) {
+                        failedBatchCount.incrementAndGet();
+                    }
+                    long totalBytes = bytesSent.addAndGet(body.getBytesWritten());
+                    BatchListener listener = batchListener;
+                    if (listener != null) {
+                        listener.onBatchFinished(storedDays, totalBytes);
+                    }
+                    inFlight.release();
+                    done.countDown();
+                }
+            });
+        }
+
+        done.await();
+        return acknowledged;
+    }
+
+    private static void negotiate(Response response) {
+        if (response.code() == 415) {
+            // The batch stays queued and is resent as JSON on the next attempt
+            wireFormat = SyncWireFormat.JSON;
+            return;
+        }
+        String acceptPost = response.header("Accept-Post");
+        if (acceptPost != null) {
+            wireFormat = SyncWireFormat.fromAcceptPost(acceptPost);
+        }
+    }
+
+    // The entries of a batch the server stored. Bodies list them under "stored"
+    // when some days failed; a success without the list (a replayed
+    // idempotency key, an older server) covers the whole batch.
+    private static List<SyncOutbox.Entry> storedEntries(List<SyncOutbox.Entry> batch, boolean successful,
+                                                        String body) {
+        JSONArray dates = responseArray(body, "stored");
+        if (dates == null) {
+            return successful ? batch : Collections.<SyncOutbox.Entry>emptyList();
+        }
+
+        Set<String> storedDates = new HashSet<>();
+        for (int i = 0; i < dates.length(); i++) {
+            storedDates.add(dates.optString(i));
+        }
+        return entriesOn(batch, storedDates);
+    }
+
+    // The entries of a batch the server listed under "invalid", as {date, error}.
+    private static List<SyncOutbox.Entry> invalidEntries(List<SyncOutbox.Entry> batch, String body) {
+        JSONArray invalid = responseArray(body, "invalid");
+        if (invalid == null || invalid.length() == 0) {
+            return Collections.emptyList();
+        }
+
+        Set<String> invalidDates = new HashSet<>();
+        for (int i = 0; i < invalid.length(); i++) {
+            JSONObject record = invalid.optJSONObject(i);
+            if (record != null) {
+                Log.w(TAG, "Server rejected " + record.optString("date") + ": " + record.optString("error"));
+                invalidDates.add(record.optString("date"));
+            }
+        }
+        return entriesOn(batch, invalidDates);
+    }
+
+    private static List<SyncOutbox.Entry> entriesOn(List<SyncOutbox.Entry> batch, Set<String> dates) {
+        List<SyncOutbox.Entry> matching = new ArrayList<>(dates.size());
+        for (SyncOutbox.Entry entry : batch) {
+            if (dates.contains(entry.day.date.toString())) {
+                matching.add(entry);
+            }
+        }
+        return matching;
+    }
+
+    private static JSONArray responseArray(String body, String name) {
+        try {
+            return new JSONObject(body).optJSONArray(name);
+        } catch (JSONException e) {
+            // Not JSON, e.g. a gateway error page
+            return null;
+        }
+    }
+
+    // A body without digests (e.g. a replayed idempotency key) records nothing;
+    // those days are simply sent again once they are next collected.
+    private void recordDigests(String deviceId, String body) {
+        SyncDigestLedger ledger = digestLedger;
+        if (ledger == null) {
+            return;
+        }
+        try {
+            JSONObject digests = new JSONObject(body).optJSONObject("digests");
+            if (digests == null) {
+                return;
+            }
+            Map<LocalDate, Map<String, Long>> parsed = new HashMap<>();
+            for (Iterator<String> days = digests.keys(); days.hasNext(); ) {
+                String day = days.next();
+                JSONObject metrics = digests.getJSONObject(day);
+                Map<String, Long> dayDigests = new HashMap<>();
+                for (Iterator<String> names = metrics.keys(); names.hasNext(); ) {
+                    String metric = names.next();
+                    dayDigests.put(metric, DayDigest.parseHex(metrics.getString(metric)));
+                }
+                parsed.put(LocalDate.parse(day), dayDigests);
+            }
+            ledger.record(deviceId, parsed);
+        } catch (JSONException | RuntimeException e) {
+            // The batch is stored either way; a missing digest only means a resend
+            Log.w(TAG, "Could not read acknowledged digests", e);
+        }
+    }
+
+    private void backOff(Response response) {
+        int code = response.code();
+        if (code == 401) {
+            unauthorized = true;
+            return;
+        }
+        if (code != 429 && code < 500) {
+            return;
+        }
+        serverUnhealthy = true;
+        if (code == 429 || code == 503) {
+            throttled = true;
+        }
+        long retryAfter = SyncBackoff.parseRetryAfterMillis(response.header("Retry-After"), System.currentTimeMillis());
+        retryAfterMillis.accumulateAndGet(retryAfter, Math::max);
+    }
+
+    // Budgets are measured in JSON, an upper bound for the columnar encoding.
+    private List<List<SyncOutbox.Entry>> split(String deviceId, List<SyncOutbox.Entry> entries) throws IOException {
+        List<List<SyncOutbox.Entry>> batches = new ArrayList<>();
+        if (entries.isEmpty()) {
+            return batches;
+        }
+
+        SyncPayload first = toPayload(deviceId, entries.subList(0, 1));
+        long envelopeBytes = SyncPayloadWriter.measureEnvelope(first);
+
+        List<SyncOutbox.Entry> current = new ArrayList<>();
+        long currentBytes = envelopeBytes;
+        for (SyncOutbox.Entry entry : entries) {
+            long dayBytes = SyncPayloadWriter.measureDay(entry.day);
+            // A day larger than the budget still goes out, alone in its batch
+            if (!current.isEmpty() && currentBytes + dayBytes > maxBatchBytes) {
+                batches.add(current);
+                current = new ArrayList<>();
+                currentBytes = envelopeBytes;
+            }
+            current.add(entry);
+            currentBytes += dayBytes;
+        }
+        batches.add(current);
+        return batches;
+    }
+
+    private static SyncPayload toPayload(String deviceId, List<SyncOutbox.Entry> batch) {
+        List<DayAggregate> days = new ArrayList<>(batch.size());
+        for (SyncOutbox.Entry entry : batch) {
+            days.add(entry.day);
+        }
+        return new SyncPayload(deviceId, "android", days.get(0).date, days.get(days.size() - 1).date, days);
+    }
+
+    // Stable across retries of the same queued rows, so a batch the server already
+    // stored is answered as a duplicate; any re-queued day changes the key.
+    private static String idempotencyKey(String signature, List<SyncOutbox.Entry> batch) {
+        StringBuilder seed = new StringBuilder(signature);
+        for (SyncOutbox.Entry entry : batch) {
+            seed.append(':').append(entry.revision);
+        }
+        return UUID.nameUUIDFromBytes(seed.toString().getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    public interface BatchListener {
+        void onBatchFinished(int daysAcknowledged, long totalBytesSent);
+    }
+}
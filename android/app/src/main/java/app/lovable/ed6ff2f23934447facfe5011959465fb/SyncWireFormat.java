@@ -0,0 +1,42 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import okhttp3.MediaType;
+
+// Body encodings health-sync understands. JSON is always accepted; the
+// columnar encoding is only used once the server has advertised it.
+public enum SyncWireFormat {
+    JSON("application/json; charset=utf-8", true) {
+        @Override
+        public void write(SyncPayload payload, OutputStream out) throws IOException {
+            SyncPayloadWriter.write(payload, out);
+        }
+    },
+    // Already dense, gzip would mostly cost CPU
+    COLUMNAR("application/vnd.health-sync.columnar", false) {
+        @Override
+        public void write(SyncPayload payload, OutputStream out) throws IOException {
+            ColumnarPayloadWriter.write(payload, out);
+        }
+    };
+
+    public final MediaType mediaType;
+    public final boolean gzip;
+
+    SyncWireFormat(String mediaType, boolean gzip) {
+        this.mediaType = MediaType.get(mediaType);
+        this.gzip = gzip;
+    }
+
+    public abstract void write(SyncPayload payload, OutputStream out) throws IOException;
+
+    // Picks the best format listed in the server's Accept-Post header.
+    public static SyncWireFormat fromAcceptPost(String acceptPost) {
+        if (acceptPost != null && acceptPost.contains(COLUMNAR.mediaType.type() + "/" + COLUMNAR.mediaType.subtype())) {
+            return COLUMNAR;
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,158 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import android.util.Log;
+
+import androidx.health.connect.client.HealthConnectClient;
+import androidx.health.connect.client.records.ExerciseSessionRecord;
+import androidx.health.connect.client.records.Record;
+import androidx.health.connect.client.records.TotalCaloriesBurnedRecord;
+import androidx.health.connect.client.records.metadata.DataOrigin;
+import androidx.health.connect.client.records.metadata.Metadata;
+import androidx.health.connect.client.units.Energy;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import kotlin.coroutines.EmptyCoroutineContext;
+import kotlinx.coroutines.BuildersKt;
+
+// Writes workouts completed in the app to Health Connect as an exercise
+// session plus, when known, the calories burned. Records go out in
+// insertRecords batches of at most MAX_RECORDS_PER_INSERT, so a backlog of
+// workouts costs a few IPC calls rather than one per workout.
+//
+// Every record carries a client record ID derived from the workout ID, which
+// makes Health Connect treat a repeated write as an upsert of the same record:
+// retrying a batch, or writing a workout again, never duplicates it.
+public class WorkoutWriter {
+    private static final String TAG = "WorkoutWriter";
+    // Keeps each call well below the binder transaction limit
+    private static final int MAX_RECORDS_PER_INSERT = 200;
+    private static final String SESSION_ID_PREFIX = "workout:";
+    private static final String CALORIES_ID_PREFIX = "workout-calories:";
+
+    private final HealthConnectClient healthConnectClient;
+
+    public WorkoutWriter(HealthConnectClient healthConnectClient) {
+        this.healthConnectClient = healthConnectClient;
+    }
+
+    public static class Workout {
+        public final String id;
+        public final Instant startTime;
+        public final Instant endTime;
+        public final int exerciseType;
+        public final String title;
+        public final String notes;
+        // Null when the app has no estimate
+        public final Double calories;
+        // Higher versions replace what an earlier write stored
+        public final long version;
+
+        public Workout(String id, Instant startTime, Instant endTime, int exerciseType, String title,
+                       String notes, Double calories, long version) {
+            this.id = id;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.exerciseType = exerciseType;
+            this.title = title;
+            this.notes = notes;
+            this.calories = calories;
+            this.version = version;
+        }
+    }
+
+    public static class WriteResult {
+        public final int written;
+        // IDs of workouts whose batch Health Connect rejected
+        public final List<String> failed;
+
+        WriteResult(int written, List<String> failed) {
+            this.written = written;
+            this.failed = failed;
+        }
+    }
+
+    // A failed batch does not stop the others; its workouts are reported for a retry.
+    public WriteResult write(List<Workout> workouts) throws InterruptedException {
+        int written = 0;
+        List<String> failed = new ArrayList<>();
+
+        List<Record> batch = new ArrayList<>();
+        List<Workout> batchWorkouts = new ArrayList<>();
+        for (Workout workout : workouts) {
+            List<Record> records = toRecords(workout);
+            // A workout's records stay in one batch, so it is written whole or not at all
+            if (!batch.isEmpty() && batch.size() + records.size() > MAX_RECORDS_PER_INSERT) {
+                written += insert(batch, batchWorkouts, failed);
+                batch = new ArrayList<>();
+                batchWorkouts = new ArrayList<>();
+            }
+            batch.addAll(records);
+            batchWorkouts.add(workout);
+        }
+        if (!batch.isEmpty()) {
+            written += insert(batch, batchWorkouts, failed);
+        }
+        return new WriteResult(written, failed);
+    }
+
+    private int insert(List<Record> batch, List<Workout> batchWorkouts, List<String> failed) throws InterruptedException {
+        try {
+            BuildersKt.runBlocking(
+                EmptyCoroutineContext.INSTANCE,
+                (scope, continuation) -> healthConnectClient.insertRecords(batch, continuation)
+            );
+            return batchWorkouts.size();
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to insert " + batch.size() + " workout records", e);
+            for (Workout workout : batchWorkouts) {
+                failed.add(workout.id);
+            }
+            return 0;
+        }
+    }
+
+    private static List<Record> toRecords(Workout workout) {
+        ZoneId zone = ZoneId.systemDefault();
+        ZoneOffset startOffset = zone.getRules().getOffset(workout.startTime);
+        ZoneOffset endOffset = zone.getRules().getOffset(workout.endTime);
+
+        List<Record> records = new ArrayList<>(2);
+        records.add(new ExerciseSessionRecord(
+            workout.startTime, startOffset,
+            workout.endTime, endOffset,
+            workout.exerciseType,
+            workout.title,
+            workout.notes,
+            metadata(SESSION_ID_PREFIX + workout.id, workout.version)
+        ));
+        if (workout.calories != null && workout.calories > 0) {
+            records.add(new TotalCaloriesBurnedRecord(
+                workout.startTime, startOffset,
+                workout.endTime, endOffset,
+                Energy.kilocalories(workout.calories),
+                metadata(CALORIES_ID_PREFIX + workout.id, workout.version)
+            ));
+        }
+        return records;
+    }
+
+    // Health Connect assigns the ID and origin on insert
+    private static Metadata metadata(String clientRecordId, long version) {
+        return new Metadata(
+            "",
+            new DataOrigin(""),
+            Instant.EPOCH,
+            clientRecordId,
+            version,
+            null,
+            Metadata.RECORDING_METHOD_MANUAL_ENTRY
+        );
+    }
+}
@@ -0,0 +1,184 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Sync upload path on synthetic data: building the payload, writing it as JSON
+// or columnar, gzipping the JSON the way SyncRequestBody does, and signing it.
+// Day values come from a fixed seed, so runs compare like for like. The gc
+// profiler reports gc.alloc.rate.norm, which is what legacySign and
+// serializeAndSign are compared on.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SyncPayloadBenchmark {
+    private static final String DEVICE_ID = "0f1e2d3c-4b5a-6978-8796-a5b4c3d2e1f0";
+    private static final String SECRET = "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff";
+    private static final int BUCKET_MINUTES = 5;
+
+    @Param({ "7", "90", "365" })
+    public int days;
+
+    @Param({ "false", "true" })
+    public boolean intraday;
+
+    private List<DayAggregate> aggregates;
+    private SyncPayload payload;
+    private byte[] json;
+    private SyncRequestSigner signer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        LocalDate today = LocalDate.of(2025, 11, 1);
+        Random random = new Random(42);
+        aggregates = new ArrayList<>(days);
+        for (int i = days - 1; i >= 0; i--) {
+            LocalDate date = today.minusDays(i);
+            DayAggregate day = new DayAggregate(date,
+                3000L + random.nextInt(12000),
+                60L + random.nextInt(25),
+                45L + random.nextInt(10),
+                120L + random.nextInt(50),
+                5.0 + random.nextInt(40) / 10.0,
+                1800L + random.nextInt(1200));
+            if (intraday) {
+                day = day.withHeartRateSeries(series(date, random));
+            }
+            aggregates.add(day);
+        }
+        payload = build();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SyncPayloadWriter.write(payload, out);
+        json = out.toByteArray();
+        signer = SyncRequestSigner.forSecret(SECRET);
+    }
+
+    // A full day of buckets, as a watch that records around the clock produces
+    private static HeartRateSeries series(LocalDate date, Random random) {
+        int size = 24 * 60 / BUCKET_MINUTES;
+        int[] offsets = new int[size];
+        int[] min = new int[size];
+        int[] max = new int[size];
+        int[] avg = new int[size];
+        int[] count = new int[size];
+        for (int i = 0; i < size; i++) {
+            offsets[i] = i;
+            avg[i] = 55 + random.nextInt(40);
+            min[i] = avg[i] - random.nextInt(8);
+            max[i] = avg[i] + random.nextInt(15);
+            count[i] = 1 + random.nextInt(BUCKET_MINUTES * 12);
+        }
+        return new HeartRateSeries(date, BUCKET_MINUTES, offsets, min, max, avg, count);
+    }
+
+    private SyncPayload build() {
+        List<DayAggregate> nonEmpty = new ArrayList<>(aggregates.size());
+        for (DayAggregate day : aggregates) {
+            if (!day.isEmpty()) {
+                nonEmpty.add(day);
+            }
+        }
+        return new SyncPayload(DEVICE_ID, "android",
+            aggregates.get(0).date, aggregates.get(aggregates.size() - 1).date, nonEmpty);
+    }
+
+    @Benchmark
+    public SyncPayload buildPayload() {
+        return build();
+    }
+
+    @Benchmark
+    public long serializeJson() throws IOException {
+        Buffer buffer = new Buffer();
+        SyncPayloadWriter.write(payload, buffer.outputStream());
+        return buffer.size();
+    }
+
+    @Benchmark
+    public long serializeColumnar() throws IOException {
+        Buffer buffer = new Buffer();
+        ColumnarPayloadWriter.write(payload, buffer.outputStream());
+        return buffer.size();
+    }
+
+    @Benchmark
+    public long compressJson() throws IOException {
+        Buffer buffer = new Buffer();
+        BufferedSink gzip = Okio.buffer(new GzipSink(buffer));
+        gzip.write(json);
+        gzip.close();
+        return buffer.size();
+    }
+
+    @Benchmark
+    public long serializeAndCompressJson() throws IOException {
+        Buffer buffer = new Buffer();
+        BufferedSink gzip = Okio.buffer(new GzipSink(buffer));
+        SyncPayloadWriter.write(payload, gzip.outputStream());
+        gzip.close();
+        return buffer.size();
+    }
+
+    @Benchmark
+    public String sign() {
+        return signer.sign(json);
+    }
+
+    // What the uploader does: stream the body through the signer, no byte[] copy
+    @Benchmark
+    public String serializeAndSign() throws IOException {
+        OutputStream stream = signer.signingStream();
+        SyncPayloadWriter.write(payload, stream);
+        return signer.finish();
+    }
+
+    // The signing HealthSyncService did before SyncRequestSigner: a new Mac and
+    // decoded key per request, and String.format per digest byte
+    @Benchmark
+    public String legacySign() throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SyncRequestSigner.decodeHex(SECRET), "HmacSHA256"));
+        SyncPayloadWriter.write(payload, new OutputStream() {
+            @Override
+            public void write(int b) {
+                mac.update((byte) b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                mac.update(b, off, len);
+            }
+        });
+
+        StringBuilder result = new StringBuilder();
+        for (byte b : mac.doFinal()) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+}
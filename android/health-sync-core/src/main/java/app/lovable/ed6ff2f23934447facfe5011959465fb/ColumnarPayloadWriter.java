@@ -0,0 +1,162 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Streams a SyncPayload in the columnar layout decoded by health-sync's
+// columnar.ts. Nothing is repeated per day:
+//
+//   "HSC" version
+//   deviceId, platform          varint byte length + UTF-8
+//   window from                 zigzag varint epoch day
+//   window length               zigzag varint days
+//   day count                   varint
+//   dates                       zigzag varint delta from the previous date (first from window from)
+//   steps, heart_rate,
+//   sleep_hours (tenths),
+//   calories                    per column: presence bitmap (LSB first), then
+//                               zigzag varint deltas between present values
+//   heart_rate_series           version 2 only: presence bitmap over the days,
+//                               then per present day the bucket minutes, the
+//                               bucket count, varint offset gaps, and zigzag
+//                               varint deltas for min, max and avg, then counts
+//
+// Version 1 is written when no day carries a series, so older decoders keep
+// reading plain daily uploads.
+//
+// Like SyncPayloadWriter the output is deterministic, so the same payload can
+// be written once for the signature and again for the request body.
+public final class ColumnarPayloadWriter {
+    private static final byte[] MAGIC = { 'H', 'S', 'C' };
+    private static final int VERSION = 1;
+    private static final int VERSION_WITH_SERIES = 2;
+
+    private ColumnarPayloadWriter() {
+    }
+
+    public static void write(SyncPayload payload, OutputStream out) throws IOException {
+        List<DayAggregate> days = payload.days;
+        int count = days.size();
+        Long[] steps = new Long[count];
+        Long[] heartRate = new Long[count];
+        Long[] sleepTenths = new Long[count];
+        Long[] calories = new Long[count];
+        boolean hasSeries = false;
+        for (int i = 0; i < count; i++) {
+            DayAggregate day = days.get(i);
+            steps[i] = day.steps;
+            heartRate[i] = day.heartRateAvg;
+            // The collector rounds sleep to one decimal, so tenths are exact
+            sleepTenths[i] = day.sleepHours == null ? null : Math.round(day.sleepHours * 10);
+            calories[i] = day.calories;
+            hasSeries |= day.heartRateSeries != null;
+        }
+
+        // Varints are written byte by byte, so collect them before touching the signer or the sink
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 + count * 12);
+        buffer.write(MAGIC);
+        buffer.write(hasSeries ? VERSION_WITH_SERIES : VERSION);
+        writeString(buffer, payload.deviceId);
+        writeString(buffer, payload.platform);
+
+        long windowFrom = payload.windowFrom.toEpochDay();
+        writeSigned(buffer, windowFrom);
+        writeSigned(buffer, payload.windowTo.toEpochDay() - windowFrom);
+
+        writeVarint(buffer, count);
+        long previousDate = windowFrom;
+        for (DayAggregate day : days) {
+            long date = day.date.toEpochDay();
+            writeSigned(buffer, date - previousDate);
+            previousDate = date;
+        }
+
+        writeColumn(buffer, steps);
+        writeColumn(buffer, heartRate);
+        writeColumn(buffer, sleepTenths);
+        writeColumn(buffer, calories);
+        if (hasSeries) {
+            writeSeries(buffer, days);
+        }
+
+        buffer.writeTo(out);
+        out.flush();
+    }
+
+    private static void writeColumn(ByteArrayOutputStream out, Long[] values) {
+        byte[] presence = new byte[(values.length + 7) / 8];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                presence[i / 8] |= 1 << (i % 8);
+            }
+        }
+        out.write(presence, 0, presence.length);
+
+        long previous = 0;
+        for (Long value : values) {
+            if (value != null) {
+                writeSigned(out, value - previous);
+                previous = value;
+            }
+        }
+    }
+
+    private static void writeSeries(ByteArrayOutputStream out, List<DayAggregate> days) {
+        byte[] presence = new byte[(days.size() + 7) / 8];
+        for (int i = 0; i < days.size(); i++) {
+            if (days.get(i).heartRateSeries != null) {
+                presence[i / 8] |= 1 << (i % 8);
+            }
+        }
+        out.write(presence, 0, presence.length);
+
+        for (DayAggregate day : days) {
+            HeartRateSeries series = day.heartRateSeries;
+            if (series == null) {
+                continue;
+            }
+            writeVarint(out, series.bucketMinutes);
+            writeVarint(out, series.size());
+            int previousOffset = 0;
+            for (int offset : series.offsets) {
+                writeVarint(out, offset - previousOffset);
+                previousOffset = offset;
+            }
+            writeDeltas(out, series.min);
+            writeDeltas(out, series.max);
+            writeDeltas(out, series.avg);
+            for (int bucketCount : series.count) {
+                writeVarint(out, bucketCount);
+            }
+        }
+    }
+
+    private static void writeDeltas(ByteArrayOutputStream out, int[] values) {
+        long previous = 0;
+        for (int value : values) {
+            writeSigned(out, value - previous);
+            previous = value;
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeSigned(ByteArrayOutputStream out, long value) {
+        writeVarint(out, (value << 1) ^ (value >> 63));
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
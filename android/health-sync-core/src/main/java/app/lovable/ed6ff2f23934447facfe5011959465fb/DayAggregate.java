@@ -0,0 +1,42 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import java.time.LocalDate;
+
+// Per-day totals as returned by a Health Connect aggregation bucket.
+// Fields are null when Health Connect had no records for that metric; the
+// intraday heart rate series is only present when it was requested.
+public class DayAggregate {
+    public final LocalDate date;
+    public final Long steps;
+    public final Long heartRateAvg;
+    public final Long heartRateMin;
+    public final Long heartRateMax;
+    public final Double sleepHours;
+    public final Long calories;
+    public final HeartRateSeries heartRateSeries;
+
+    public DayAggregate(LocalDate date, Long steps, Long heartRateAvg, Long heartRateMin,
+                        Long heartRateMax, Double sleepHours, Long calories) {
+        this(date, steps, heartRateAvg, heartRateMin, heartRateMax, sleepHours, calories, null);
+    }
+
+    public DayAggregate(LocalDate date, Long steps, Long heartRateAvg, Long heartRateMin,
+                        Long heartRateMax, Double sleepHours, Long calories, HeartRateSeries heartRateSeries) {
+        this.date = date;
+        this.steps = steps;
+        this.heartRateAvg = heartRateAvg;
+        this.heartRateMin = heartRateMin;
+        this.heartRateMax = heartRateMax;
+        this.sleepHours = sleepHours;
+        this.calories = calories;
+        this.heartRateSeries = heartRateSeries;
+    }
+
+    public DayAggregate withHeartRateSeries(HeartRateSeries series) {
+        return new DayAggregate(date, steps, heartRateAvg, heartRateMin, heartRateMax, sleepHours, calories, series);
+    }
+
+    public boolean isEmpty() {
+        return steps == null && heartRateAvg == null && sleepHours == null && calories == null;
+    }
+}
@@ -0,0 +1,102 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Content digests of the metrics a day uploads, one per metric: FNV-1a 64 of
+// "<metric>:<canonical value>". health-sync computes the same digests
+// (supabase/functions/health-sync/digest.ts) for what it stored, so both
+// sides must keep the canonical forms in step; DayDigestTest and
+// digest.test.ts pin the same vectors.
+public final class DayDigest {
+    public static final String STEPS = "steps";
+    public static final String HEART_RATE = "heart_rate";
+    public static final String SLEEP_HOURS = "sleep_hours";
+    public static final String CALORIES = "calories";
+    public static final String HEART_RATE_SERIES = "heart_rate_series";
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private DayDigest() {
+    }
+
+    // Digests of the metrics present in the day, keyed by the payload's metric names.
+    public static Map<String, Long> of(DayAggregate day) {
+        Map<String, Long> digests = new LinkedHashMap<>();
+        if (day.steps != null) {
+            digests.put(STEPS, fnv1a(STEPS + ":" + day.steps));
+        }
+        // Only the average is uploaded
+        if (day.heartRateAvg != null) {
+            digests.put(HEART_RATE, fnv1a(HEART_RATE + ":" + day.heartRateAvg));
+        }
+        if (day.sleepHours != null) {
+            digests.put(SLEEP_HOURS, fnv1a(SLEEP_HOURS + ":" + Math.round(day.sleepHours * 10)));
+        }
+        if (day.calories != null) {
+            digests.put(CALORIES, fnv1a(CALORIES + ":" + day.calories));
+        }
+        if (day.heartRateSeries != null) {
+            digests.put(HEART_RATE_SERIES, fnv1a(seriesText(day.heartRateSeries)));
+        }
+        return digests;
+    }
+
+    // The day with only the given metrics left; null if none of them is present.
+    public static DayAggregate retain(DayAggregate day, Set<String> metrics) {
+        boolean heartRate = metrics.contains(HEART_RATE);
+        DayAggregate retained = new DayAggregate(
+            day.date,
+            metrics.contains(STEPS) ? day.steps : null,
+            heartRate ? day.heartRateAvg : null,
+            heartRate ? day.heartRateMin : null,
+            heartRate ? day.heartRateMax : null,
+            metrics.contains(SLEEP_HOURS) ? day.sleepHours : null,
+            metrics.contains(CALORIES) ? day.calories : null,
+            metrics.contains(HEART_RATE_SERIES) ? day.heartRateSeries : null
+        );
+        return retained.isEmpty() && retained.heartRateSeries == null ? null : retained;
+    }
+
+    public static long fnv1a(String text) {
+        long hash = FNV_OFFSET;
+        for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    public static String toHex(long digest) {
+        String hex = Long.toHexString(digest);
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    public static long parseHex(String hex) {
+        return Long.parseUnsignedLong(hex, 16);
+    }
+
+    private static String seriesText(HeartRateSeries series) {
+        StringBuilder text = new StringBuilder(HEART_RATE_SERIES.length() + series.size() * 20);
+        text.append(HEART_RATE_SERIES).append(':').append(series.bucketMinutes);
+        appendInts(text, series.offsets);
+        appendInts(text, series.min);
+        appendInts(text, series.max);
+        appendInts(text, series.avg);
+        appendInts(text, series.count);
+        return text.toString();
+    }
+
+    private static void appendInts(StringBuilder text, int[] values) {
+        text.append(';');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(values[i]);
+        }
+    }
+}
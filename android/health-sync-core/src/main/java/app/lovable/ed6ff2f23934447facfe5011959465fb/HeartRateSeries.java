@@ -0,0 +1,30 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import java.time.LocalDate;
+
+// Intraday heart rate of one local day, reduced to fixed-width buckets. Only
+// buckets that received samples are kept: offsets[i] is the bucket index
+// counted from local midnight, and the other arrays hold that bucket's values.
+public class HeartRateSeries {
+    public final LocalDate date;
+    public final int bucketMinutes;
+    public final int[] offsets;
+    public final int[] min;
+    public final int[] max;
+    public final int[] avg;
+    public final int[] count;
+
+    public HeartRateSeries(LocalDate date, int bucketMinutes, int[] offsets, int[] min, int[] max, int[] avg, int[] count) {
+        this.date = date;
+        this.bucketMinutes = bucketMinutes;
+        this.offsets = offsets;
+        this.min = min;
+        this.max = max;
+        this.avg = avg;
+        this.count = count;
+    }
+
+    public int size() {
+        return offsets.length;
+    }
+}
@@ -0,0 +1,126 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+// Merges overlapping interval records of one metric, such as steps written by
+// both a watch app and the phone, into a single timeline. Records are sorted
+// by start and swept once: wherever several overlap, only the one from the
+// highest-priority origin counts, and a record contributes the share of its
+// value that falls in the stretches it wins. O(n log n) in the record count.
+//
+// Lower rank wins; records with equal rank are resolved in start order, so an
+// app overlapping itself is not double-counted either.
+public class IntervalDeduplicator {
+    private long[] starts = new long[64];
+    private long[] ends = new long[64];
+    private double[] values = new double[64];
+    private int[] ranks = new int[64];
+    private int size;
+
+    public void add(Instant start, Instant end, double value, int rank) {
+        if (end.isBefore(start)) {
+            return;
+        }
+        if (size == starts.length) {
+            int capacity = size * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            values = Arrays.copyOf(values, capacity);
+            ranks = Arrays.copyOf(ranks, capacity);
+        }
+        starts[size] = start.toEpochMilli();
+        ends[size] = end.toEpochMilli();
+        values[size] = value;
+        ranks[size] = rank;
+        size++;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Deduplicated totals per local day; segments crossing midnight are split pro rata.
+    public Map<LocalDate, Double> totalsByDay(ZoneId zone) {
+        Map<LocalDate, Double> totals = new TreeMap<>();
+        sweep((start, end, amount) -> addToDays(totals, zone, start, end, amount));
+        return totals;
+    }
+
+    // Emits the winning stretch of every record, in time order.
+    public void sweep(SegmentConsumer consumer) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> starts[i]));
+
+        PriorityQueue<Integer> active = new PriorityQueue<>(
+            Comparator.<Integer>comparingInt(i -> ranks[i]).thenComparingLong(i -> starts[i]).thenComparingInt(i -> i)
+        );
+
+        int next = 0;
+        long cursor = Long.MIN_VALUE;
+        while (next < size || !active.isEmpty()) {
+            // Finished records are dropped lazily, once they reach the top
+            while (!active.isEmpty() && ends[active.peek()] <= cursor) {
+                active.poll();
+            }
+            if (active.isEmpty()) {
+                if (next == size) {
+                    break;
+                }
+                cursor = starts[order[next]];
+            }
+            while (next < size && starts[order[next]] <= cursor) {
+                int record = order[next++];
+                if (ends[record] == starts[record]) {
+                    // Instantaneous records cannot overlap anything
+                    consumer.accept(starts[record], ends[record], values[record]);
+                } else {
+                    active.add(record);
+                }
+            }
+            if (active.isEmpty()) {
+                continue;
+            }
+
+            int winner = active.peek();
+            long segmentEnd = ends[winner];
+            if (next < size && starts[order[next]] < segmentEnd) {
+                segmentEnd = starts[order[next]];
+            }
+            double share = values[winner] * (segmentEnd - cursor) / (ends[winner] - starts[winner]);
+            consumer.accept(cursor, segmentEnd, share);
+            cursor = segmentEnd;
+        }
+    }
+
+    private static void addToDays(Map<LocalDate, Double> totals, ZoneId zone, long start, long end, double amount) {
+        LocalDate day = Instant.ofEpochMilli(start).atZone(zone).toLocalDate();
+        long dayEnd = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        if (end <= dayEnd) {
+            totals.merge(day, amount, Double::sum);
+            return;
+        }
+
+        long segmentStart = start;
+        while (segmentStart < end) {
+            long segmentEnd = Math.min(end, dayEnd);
+            totals.merge(day, amount * (segmentEnd - segmentStart) / (end - start), Double::sum);
+            segmentStart = segmentEnd;
+            day = day.plusDays(1);
+            dayEnd = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        }
+    }
+
+    public interface SegmentConsumer {
+        void accept(long startMillis, long endMillis, double amount);
+    }
+}
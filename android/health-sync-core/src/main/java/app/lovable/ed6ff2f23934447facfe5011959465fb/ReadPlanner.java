@@ -0,0 +1,83 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+// Splits the days a caller wants into read chunks, most important first:
+// today, then the days currently on screen, then everything else, newer days
+// first within a priority. A chunk is one Health Connect range of at most
+// maxChunkDays; it may span days nobody asked for, which are read and dropped,
+// because one wider call is cheaper than several narrow ones.
+public final class ReadPlanner {
+    public static final int PRIORITY_TODAY = 0;
+    public static final int PRIORITY_VISIBLE = 1;
+    public static final int PRIORITY_BACKGROUND = 2;
+
+    private ReadPlanner() {
+    }
+
+    public static final class Chunk {
+        public final LocalDate start;
+        public final LocalDate end;
+        public final int priority;
+        // The requested days inside [start, end]
+        public final SortedSet<LocalDate> dates;
+
+        Chunk(SortedSet<LocalDate> dates, int priority) {
+            this.start = dates.first();
+            this.end = dates.last();
+            this.priority = priority;
+            this.dates = dates;
+        }
+
+        public int spanDays() {
+            return (int) (end.toEpochDay() - start.toEpochDay()) + 1;
+        }
+    }
+
+    // visibleFrom/visibleTo may be null when nothing is on screen.
+    public static List<Chunk> plan(SortedSet<LocalDate> days, LocalDate today,
+                                   LocalDate visibleFrom, LocalDate visibleTo, int maxChunkDays) {
+        if (days.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        SortedSet<LocalDate> current = new TreeSet<>();
+        int priority = 0;
+        for (LocalDate date : days) {
+            int datePriority = priority(date, today, visibleFrom, visibleTo);
+            boolean continues = !current.isEmpty()
+                && datePriority == priority
+                && date.toEpochDay() - current.first().toEpochDay() < maxChunkDays;
+            if (!continues) {
+                if (!current.isEmpty()) {
+                    chunks.add(new Chunk(current, priority));
+                }
+                current = new TreeSet<>();
+                priority = datePriority;
+            }
+            current.add(date);
+        }
+        chunks.add(new Chunk(current, priority));
+
+        chunks.sort(Comparator.<Chunk>comparingInt(chunk -> chunk.priority)
+            .thenComparing((a, b) -> b.end.compareTo(a.end)));
+        return chunks;
+    }
+
+    private static int priority(LocalDate date, LocalDate today, LocalDate visibleFrom, LocalDate visibleTo) {
+        if (date.equals(today)) {
+            return PRIORITY_TODAY;
+        }
+        if (visibleFrom != null && visibleTo != null && !date.isBefore(visibleFrom) && !date.isAfter(visibleTo)) {
+            return PRIORITY_VISIBLE;
+        }
+        return PRIORITY_BACKGROUND;
+    }
+}
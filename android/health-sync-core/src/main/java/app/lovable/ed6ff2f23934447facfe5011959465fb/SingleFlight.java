@@ -0,0 +1,105 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+// Coalesces concurrent loads of overlapping key sets. Each key has at most
+// one load in flight; a caller asking for keys that are already being loaded
+// waits for those loads and only loads the rest itself. A load produces one
+// result for all the keys it covered, which every caller waiting on any of
+// them receives.
+//
+// Callers load their own keys before waiting on anyone else's, so two
+// overlapping callers never wait on each other. A load abandoned because its
+// caller was interrupted is not a failure for the others: its keys are
+// released and the callers waiting on them load them themselves.
+public final class SingleFlight<K, V> {
+    public interface Loader<K, V> {
+        V load(SortedSet<K> keys) throws Exception;
+    }
+
+    // Guarded by this
+    private final Map<K, CompletableFuture<V>> inFlight = new HashMap<>();
+
+    // The result covering each key, one entry per distinct load. Rethrows the
+    // loader's exception for keys whose load failed.
+    public Map<V, SortedSet<K>> join(SortedSet<K> keys, Loader<K, V> loader) throws Exception {
+        Map<V, SortedSet<K>> results = new IdentityHashMap<>();
+        SortedSet<K> remaining = keys;
+        while (!remaining.isEmpty()) {
+            remaining = joinOnce(remaining, loader, results);
+        }
+        return results;
+    }
+
+    // Adds what it got to results and returns the keys whose load was abandoned.
+    private SortedSet<K> joinOnce(SortedSet<K> keys, Loader<K, V> loader, Map<V, SortedSet<K>> results)
+            throws Exception {
+        SortedSet<K> claimed = new TreeSet<>(keys.comparator());
+        Map<K, CompletableFuture<V>> joined = new HashMap<>();
+        CompletableFuture<V> own = new CompletableFuture<>();
+        synchronized (this) {
+            for (K key : keys) {
+                CompletableFuture<V> pending = inFlight.get(key);
+                if (pending == null) {
+                    inFlight.put(key, own);
+                    claimed.add(key);
+                } else {
+                    joined.put(key, pending);
+                }
+            }
+        }
+
+        if (!claimed.isEmpty()) {
+            try {
+                V result = loader.load(claimed);
+                release(claimed, own);
+                own.complete(result);
+                results.computeIfAbsent(result, r -> new TreeSet<>(keys.comparator())).addAll(claimed);
+            } catch (Exception | Error e) {
+                release(claimed, own);
+                boolean interrupted = e instanceof InterruptedException || Thread.currentThread().isInterrupted();
+                own.completeExceptionally(interrupted ? LoadAbandoned.INSTANCE : e);
+                throw e;
+            }
+        }
+
+        SortedSet<K> abandoned = new TreeSet<>(keys.comparator());
+        for (Map.Entry<K, CompletableFuture<V>> entry : joined.entrySet()) {
+            V result;
+            try {
+                result = entry.getValue().get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause == LoadAbandoned.INSTANCE) {
+                    abandoned.add(entry.getKey());
+                    continue;
+                }
+                throw cause instanceof Exception ? (Exception) cause : e;
+            }
+            results.computeIfAbsent(result, r -> new TreeSet<>(keys.comparator())).add(entry.getKey());
+        }
+        return abandoned;
+    }
+
+    // Keys are released before the result is published; a caller arriving in
+    // between starts a fresh load rather than joining a finished one.
+    private synchronized void release(SortedSet<K> keys, CompletableFuture<V> own) {
+        for (K key : keys) {
+            inFlight.remove(key, own);
+        }
+    }
+
+    private static final class LoadAbandoned extends Exception {
+        static final LoadAbandoned INSTANCE = new LoadAbandoned();
+
+        private LoadAbandoned() {
+            super("Load abandoned by an interrupted caller", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
+// Timing decisions that spread a fleet of devices out: a stable per-device
+// phase for the periodic sync, full-jitter exponential backoff for retries and
+// Retry-After parsing. All pure functions, the caller supplies clock and Random.
+public final class SyncBackoff {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private SyncBackoff() {
+    }
+
+    // Fraction in [0, 1) that only depends on the device ID, so a device keeps
+    // the same slot across restarts while the fleet covers the range evenly.
+    public static double deviceFraction(String deviceId) {
+        long hash = FNV_OFFSET;
+        for (byte b : deviceId.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        // FNV leaves the high bits alike for similar IDs; murmur3's finalizer spreads them
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+
+    // Offset of this device inside a period, e.g. its minute of the day.
+    public static long deviceOffsetMillis(String deviceId, long periodMillis) {
+        return (long) (deviceFraction(deviceId) * periodMillis);
+    }
+
+    // "Full jitter": uniform in [0, min(cap, base * 2^attempt)]. Retries of
+    // devices that failed together land anywhere in the window instead of
+    // moving as one wave.
+    public static long fullJitterMillis(int attempt, long baseMillis, long capMillis, Random random) {
+        // Compared against cap >> attempt so the shift cannot overflow
+        long ceiling = attempt < 63 && baseMillis <= capMillis >> attempt ? baseMillis << attempt : capMillis;
+        return (long) (random.nextDouble() * (ceiling + 1));
+    }
+
+    // Retry-After as delta-seconds or an HTTP date; -1 when absent or unreadable.
+    public static long parseRetryAfterMillis(String value, long nowMillis) {
+        if (value == null) {
+            return -1;
+        }
+        String trimmed = value.trim();
+        if (trimmed.isEmpty()) {
+            return -1;
+        }
+        if (Character.isDigit(trimmed.charAt(0))) {
+            try {
+                return Math.max(0, Long.parseLong(trimmed)) * 1000;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        try {
+            long at = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0, at - nowMillis);
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
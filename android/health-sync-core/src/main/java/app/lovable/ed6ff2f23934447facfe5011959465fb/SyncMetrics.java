@@ -0,0 +1,57 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+// Timings and counters of one HealthSyncService run. Every field is a long so
+// a run maps onto a fixed-size record in SyncMetricsLog.
+public class SyncMetrics {
+    public static final int OUTCOME_SUCCESS = 0;
+    public static final int OUTCOME_RETRY = 1;
+    public static final int OUTCOME_FAILURE = 2;
+
+    public static final int FIELD_COUNT = 16;
+
+    public long startedAt;
+    public long attempt;
+    public long outcome;
+    public long totalMillis;
+    public long credentialMillis;
+    public long changesMillis;
+    public long aggregateMillis;
+    public long heartRateMillis;
+    public long outboxMillis;
+    public long signMillis;
+    public long httpMillis;
+    public long httpMaxMillis;
+    public long batches;
+    public long failedBatches;
+    public long bytesSent;
+    public long daysUploaded;
+
+    public long[] toFields() {
+        return new long[] {
+            startedAt, attempt, outcome, totalMillis, credentialMillis, changesMillis, aggregateMillis,
+            heartRateMillis, outboxMillis, signMillis, httpMillis, httpMaxMillis, batches, failedBatches,
+            bytesSent, daysUploaded
+        };
+    }
+
+    public static SyncMetrics fromFields(long[] fields) {
+        SyncMetrics metrics = new SyncMetrics();
+        metrics.startedAt = fields[0];
+        metrics.attempt = fields[1];
+        metrics.outcome = fields[2];
+        metrics.totalMillis = fields[3];
+        metrics.credentialMillis = fields[4];
+        metrics.changesMillis = fields[5];
+        metrics.aggregateMillis = fields[6];
+        metrics.heartRateMillis = fields[7];
+        metrics.outboxMillis = fields[8];
+        metrics.signMillis = fields[9];
+        metrics.httpMillis = fields[10];
+        metrics.httpMaxMillis = fields[11];
+        metrics.batches = fields[12];
+        metrics.failedBatches = fields[13];
+        metrics.bytesSent = fields[14];
+        metrics.daysUploaded = fields[15];
+        return metrics;
+    }
+}
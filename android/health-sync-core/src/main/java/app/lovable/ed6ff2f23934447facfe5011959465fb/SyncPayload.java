@@ -0,0 +1,22 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Everything a health-sync upload carries, kept as plain values so the JSON
+// body can be regenerated on demand instead of being held in memory.
+public class SyncPayload {
+    public final String deviceId;
+    public final String platform;
+    public final LocalDate windowFrom;
+    public final LocalDate windowTo;
+    public final List<DayAggregate> days;
+
+    public SyncPayload(String deviceId, String platform, LocalDate windowFrom, LocalDate windowTo, List<DayAggregate> days) {
+        this.deviceId = deviceId;
+        this.platform = platform;
+        this.windowFrom = windowFrom;
+        this.windowTo = windowTo;
+        this.days = days;
+    }
+}
@@ -0,0 +1,156 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+// Streams a SyncPayload as the JSON document the health-sync function expects.
+// Output is deterministic, so the same payload can be written once for the
+// signature and again for the request body. Plain java.io on purpose, so the
+// writer runs and benchmarks on any JVM.
+public final class SyncPayloadWriter {
+
+    private SyncPayloadWriter() {
+    }
+
+    public static void write(SyncPayload payload, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writer.write("{\"deviceId\":");
+        writeString(writer, payload.deviceId);
+        writer.write(",\"platform\":");
+        writeString(writer, payload.platform);
+
+        writer.write(",\"window\":{\"from\":");
+        writeString(writer, payload.windowFrom.toString());
+        writer.write(",\"to\":");
+        writeString(writer, payload.windowTo.toString());
+        writer.write('}');
+
+        writer.write(",\"data\":[");
+        boolean first = true;
+        for (DayAggregate day : payload.days) {
+            if (!first) {
+                writer.write(',');
+            }
+            writeDay(writer, day);
+            first = false;
+        }
+        writer.write("]}");
+        writer.flush();
+    }
+
+    // Bytes a day adds to the "data" array, including its separating comma.
+    public static long measureDay(DayAggregate day) throws IOException {
+        CountingOutputStream counter = new CountingOutputStream();
+        Writer writer = new OutputStreamWriter(counter, StandardCharsets.UTF_8);
+        writeDay(writer, day);
+        writer.flush();
+        return counter.count + 1;
+    }
+
+    // Bytes of the payload without any days.
+    public static long measureEnvelope(SyncPayload payload) throws IOException {
+        CountingOutputStream counter = new CountingOutputStream();
+        write(new SyncPayload(payload.deviceId, payload.platform, payload.windowFrom, payload.windowTo,
+            Collections.<DayAggregate>emptyList()), counter);
+        return counter.count;
+    }
+
+    private static void writeDay(Writer writer, DayAggregate day) throws IOException {
+        writer.write("{\"date\":");
+        writeString(writer, day.date.toString());
+        if (day.steps != null) {
+            writer.write(",\"steps\":");
+            writer.write(Long.toString(day.steps));
+        }
+        if (day.heartRateAvg != null) {
+            writer.write(",\"heart_rate\":");
+            writer.write(Long.toString(day.heartRateAvg));
+        }
+        if (day.sleepHours != null) {
+            writer.write(",\"sleep_hours\":");
+            writer.write(Double.toString(day.sleepHours));
+        }
+        if (day.calories != null) {
+            writer.write(",\"calories\":");
+            writer.write(Long.toString(day.calories));
+        }
+        if (day.heartRateSeries != null) {
+            writeSeries(writer, day.heartRateSeries);
+        }
+        writer.write('}');
+    }
+
+    // Parallel arrays rather than one object per bucket, to keep keys out of the loop
+    private static void writeSeries(Writer writer, HeartRateSeries series) throws IOException {
+        writer.write(",\"heart_rate_series\":{\"bucket_minutes\":");
+        writer.write(Integer.toString(series.bucketMinutes));
+        writeInts(writer, "offset", series.offsets);
+        writeInts(writer, "min", series.min);
+        writeInts(writer, "max", series.max);
+        writeInts(writer, "avg", series.avg);
+        writeInts(writer, "count", series.count);
+        writer.write('}');
+    }
+
+    private static void writeInts(Writer writer, String name, int[] values) throws IOException {
+        writer.write(",\"");
+        writer.write(name);
+        writer.write("\":[");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(Integer.toString(values[i]));
+        }
+        writer.write(']');
+    }
+
+    private static void writeString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+// HMAC-SHA256 signer for health-sync uploads. The hex secret is decoded once
+// per secret, and every thread gets its own initialized Mac plus reusable
+// digest and hex buffers, so signing a request allocates only the result string.
+// Only the signer for the current secret is kept; re-registering replaces it.
+//
+// update()/signingStream() and finish() must be called on the same thread.
+public final class SyncRequestSigner {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int DIGEST_LENGTH = 32;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static volatile SyncRequestSigner active;
+
+    private final String hexSecret;
+    private final SecretKeySpec key;
+    private final ThreadLocal<State> state = new ThreadLocal<State>() {
+        @Override
+        protected State initialValue() {
+            return new State(key);
+        }
+    };
+
+    private SyncRequestSigner(String hexSecret) {
+        this.hexSecret = hexSecret;
+        this.key = new SecretKeySpec(decodeHex(hexSecret), ALGORITHM);
+    }
+
+    public static SyncRequestSigner forSecret(String hexSecret) {
+        SyncRequestSigner signer = active;
+        if (signer == null || !signer.hexSecret.equals(hexSecret)) {
+            signer = new SyncRequestSigner(hexSecret);
+            active = signer;
+        }
+        return signer;
+    }
+
+    public void update(byte[] data, int offset, int length) {
+        state.get().mac.update(data, offset, length);
+    }
+
+    // Starts a new signature on this thread, discarding any half-finished one,
+    // and returns a stream that feeds everything written to it into the MAC.
+    public OutputStream signingStream() {
+        State current = state.get();
+        current.mac.reset();
+        return current.stream;
+    }
+
+    // Completes the signature started with update()/signingStream() and resets for the next one.
+    public String finish() {
+        State current = state.get();
+        try {
+            current.mac.doFinal(current.digest, 0);
+        } catch (GeneralSecurityException e) {
+            // Only thrown when the output buffer is too small
+            throw new IllegalStateException(e);
+        }
+        return toHex(current.digest, current.hex);
+    }
+
+    // Signs data on its own, discarding any half-finished signature on this thread.
+    public String sign(byte[] data) {
+        State current = state.get();
+        current.mac.reset();
+        current.mac.update(data, 0, data.length);
+        return finish();
+    }
+
+    static String toHex(byte[] bytes, char[] buffer) {
+        for (int i = 0; i < bytes.length; i++) {
+            int value = bytes[i] & 0xff;
+            buffer[i * 2] = HEX_DIGITS[value >>> 4];
+            buffer[i * 2 + 1] = HEX_DIGITS[value & 0x0f];
+        }
+        return new String(buffer, 0, bytes.length * 2);
+    }
+
+    static byte[] decodeHex(String hex) {
+        int len = hex.length();
+        byte[] data = new byte[len / 2];
+        for (int i = 0; i < len; i += 2) {
+            data[i / 2] = (byte) ((Character.digit(hex.charAt(i), 16) << 4)
+                    + Character.digit(hex.charAt(i + 1), 16));
+        }
+        return data;
+    }
+
+    private static final class State {
+        final Mac mac;
+        final byte[] digest = new byte[DIGEST_LENGTH];
+        final char[] hex = new char[DIGEST_LENGTH * 2];
+        final OutputStream stream;
+
+        State(SecretKeySpec key) {
+            try {
+                mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 not available", e);
+            }
+
+            stream = new OutputStream() {
+                @Override
+                public void write(int b) {
+                    mac.update((byte) b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    mac.update(b, off, len);
+                }
+            };
+        }
+    }
+}
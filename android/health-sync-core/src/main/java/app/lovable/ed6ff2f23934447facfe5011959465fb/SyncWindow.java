@@ -0,0 +1,33 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+// Decides which local days a sync run has to (re)compute.
+public final class SyncWindow {
+
+    private SyncWindow() {
+    }
+
+    // The trailing window when changes cannot be trusted, plus every touched
+    // day up to today. Future days are never synced.
+    public static SortedSet<LocalDate> daysToSync(LocalDate today, int windowDays, boolean fullWindow,
+                                                  Collection<LocalDate> touchedDays) {
+        SortedSet<LocalDate> days = new TreeSet<>();
+
+        if (fullWindow) {
+            for (LocalDate date = today.minusDays(windowDays); !date.isAfter(today); date = date.plusDays(1)) {
+                days.add(date);
+            }
+        }
+
+        for (LocalDate date : touchedDays) {
+            if (!date.isAfter(today)) {
+                days.add(date);
+            }
+        }
+        return days;
+    }
+}
@@ -0,0 +1,61 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+// Token bucket that refills continuously at capacity tokens per window. Time
+// is wall-clock milliseconds from the caller, so a bucket can be saved with
+// getTokens()/getUpdatedAt() and restored in a later process.
+public final class TokenBucket {
+    private final double capacity;
+    private final double tokensPerMilli;
+
+    private double tokens;
+    private long updatedAt;
+
+    public TokenBucket(long capacity, long windowMillis, double tokens, long updatedAt) {
+        this.capacity = capacity;
+        this.tokensPerMilli = (double) capacity / windowMillis;
+        this.tokens = Math.min(capacity, Math.max(0, tokens));
+        this.updatedAt = updatedAt;
+    }
+
+    public static TokenBucket full(long capacity, long windowMillis, long nowMillis) {
+        return new TokenBucket(capacity, windowMillis, capacity, nowMillis);
+    }
+
+    // Takes all permits or none.
+    public synchronized boolean tryAcquire(long permits, long nowMillis) {
+        refill(nowMillis);
+        if (tokens < permits) {
+            return false;
+        }
+        tokens -= permits;
+        return true;
+    }
+
+    // How long until permits could be acquired, 0 if they can be now. Requests
+    // above the capacity are clamped to it, they can only ever run on a full bucket.
+    public synchronized long millisUntil(long permits, long nowMillis) {
+        refill(nowMillis);
+        double missing = Math.min(permits, capacity) - tokens;
+        return missing <= 0 ? 0 : (long) Math.ceil(missing / tokensPerMilli);
+    }
+
+    public synchronized double getTokens() {
+        return tokens;
+    }
+
+    public synchronized long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public long getCapacity() {
+        return (long) capacity;
+    }
+
+    private void refill(long nowMillis) {
+        // A clock that moved backwards refills nothing rather than draining
+        if (nowMillis > updatedAt) {
+            tokens = Math.min(capacity, tokens + (nowMillis - updatedAt) * tokensPerMilli);
+            updatedAt = nowMillis;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+// The same vectors are checked by supabase/functions/health-sync/digest.test.ts;
+// change both together or the device and the server stop agreeing on what changed.
+public class DayDigestTest {
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 3);
+
+    @Test
+    public void fnv1aMatchesReferenceValues() {
+        assertEquals("cbf29ce484222325", DayDigest.toHex(DayDigest.fnv1a("")));
+        assertEquals("af63dc4c8601ec8c", DayDigest.toHex(DayDigest.fnv1a("a")));
+    }
+
+    @Test
+    public void fullDayVectors() {
+        HeartRateSeries series = new HeartRateSeries(DAY, 15,
+            new int[] { 0, 4 }, new int[] { 55, 60 }, new int[] { 70, 90 }, new int[] { 62, 75 }, new int[] { 3, 12 });
+        DayAggregate day = new DayAggregate(DAY, 8000L, 64L, 50L, 140L, 7.25, 2100L, series);
+
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put(DayDigest.STEPS, "dd0c53be2d670602");
+        expected.put(DayDigest.HEART_RATE, "5dc80ada46ca9ed6");
+        expected.put(DayDigest.SLEEP_HOURS, "f3aa4f17ea407f6c");
+        expected.put(DayDigest.CALORIES, "e95b7d6d9e59d828");
+        expected.put(DayDigest.HEART_RATE_SERIES, "ee3b8b90ff680c73");
+        assertEquals(expected, hex(DayDigest.of(day)));
+    }
+
+    @Test
+    public void sleepIsDigestedInRoundedTenths() {
+        assertEquals("f3aa5017ea40811f", sleepDigest(7.24));
+        // 72.5 rounds up on both sides, so it matches 7.26
+        assertEquals("f3aa4f17ea407f6c", sleepDigest(7.25));
+        assertEquals("f3aa4f17ea407f6c", sleepDigest(7.26));
+        assertEquals("e1ff279e5cef0fbe", sleepDigest(0.0));
+        assertEquals("38c869a3011e47eb", sleepDigest(12.0));
+    }
+
+    @Test
+    public void emptySeriesVector() {
+        HeartRateSeries series = new HeartRateSeries(DAY, 5, new int[0], new int[0], new int[0], new int[0], new int[0]);
+        DayAggregate day = new DayAggregate(DAY, null, null, null, null, null, null, series);
+
+        assertEquals("d102c732757ff920", DayDigest.toHex(DayDigest.of(day).get(DayDigest.HEART_RATE_SERIES)));
+    }
+
+    @Test
+    public void absentMetricsHaveNoDigest() {
+        DayAggregate day = new DayAggregate(DAY, 1200L, null, null, null, null, null);
+
+        Map<String, Long> digests = DayDigest.of(day);
+        assertEquals(1, digests.size());
+        assertNull(digests.get(DayDigest.HEART_RATE));
+    }
+
+    @Test
+    public void hexRoundTripsUnsigned() {
+        assertEquals(0xcbf29ce484222325L, DayDigest.parseHex("cbf29ce484222325"));
+        assertEquals("000000000000002a", DayDigest.toHex(42));
+    }
+
+    private static String sleepDigest(double hours) {
+        DayAggregate day = new DayAggregate(DAY, null, null, null, null, hours, null);
+        return DayDigest.toHex(DayDigest.of(day).get(DayDigest.SLEEP_HOURS));
+    }
+
+    private static Map<String, String> hex(Map<String, Long> digests) {
+        Map<String, String> hex = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : digests.entrySet()) {
+            hex.put(entry.getKey(), DayDigest.toHex(entry.getValue()));
+        }
+        return hex;
+    }
+}
@@ -0,0 +1,81 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class IntervalDeduplicatorTest {
+    private static final ZoneId UTC = ZoneOffset.UTC;
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 3);
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void higherPriorityOriginWinsOverlap() {
+        IntervalDeduplicator deduplicator = new IntervalDeduplicator();
+        // Watch, 10:00-11:00, 1000 steps; phone, 10:30-11:30, 600 steps
+        deduplicator.add(at(10, 0), at(11, 0), 1000, 0);
+        deduplicator.add(at(10, 30), at(11, 30), 600, 1);
+
+        // All of the watch, plus the phone's half hour the watch does not cover
+        assertEquals(1300, deduplicator.totalsByDay(UTC).get(DAY), DELTA);
+    }
+
+    @Test
+    public void lowerPriorityOriginFillsGapsAroundWinner() {
+        IntervalDeduplicator deduplicator = new IntervalDeduplicator();
+        deduplicator.add(at(10, 0), at(12, 0), 1200, 1);
+        deduplicator.add(at(10, 30), at(11, 0), 500, 0);
+
+        // The phone keeps 90 of its 120 minutes
+        assertEquals(900 + 500, deduplicator.totalsByDay(UTC).get(DAY), DELTA);
+    }
+
+    @Test
+    public void sameOriginOverlappingItselfCountsOnce() {
+        IntervalDeduplicator deduplicator = new IntervalDeduplicator();
+        deduplicator.add(at(8, 0), at(9, 0), 600, 0);
+        deduplicator.add(at(8, 0), at(9, 0), 600, 0);
+
+        assertEquals(600, deduplicator.totalsByDay(UTC).get(DAY), DELTA);
+    }
+
+    @Test
+    public void disjointRecordsAreSummed() {
+        IntervalDeduplicator deduplicator = new IntervalDeduplicator();
+        deduplicator.add(at(8, 0), at(9, 0), 600, 1);
+        deduplicator.add(at(13, 0), at(14, 0), 400, 0);
+        deduplicator.add(at(15, 0), at(15, 0), 7, 2);
+
+        assertEquals(1007, deduplicator.totalsByDay(UTC).get(DAY), DELTA);
+    }
+
+    @Test
+    public void recordCrossingMidnightIsSplitProRata() {
+        IntervalDeduplicator deduplicator = new IntervalDeduplicator();
+        deduplicator.add(at(23, 0), at(23, 0).plusSeconds(3 * 3600), 300, 0);
+
+        Map<LocalDate, Double> totals = deduplicator.totalsByDay(UTC);
+        assertEquals(100, totals.get(DAY), DELTA);
+        assertEquals(200, totals.get(DAY.plusDays(1)), DELTA);
+    }
+
+    @Test
+    public void reversedRecordsAreIgnored() {
+        IntervalDeduplicator deduplicator = new IntervalDeduplicator();
+        deduplicator.add(at(9, 0), at(8, 0), 600, 0);
+
+        assertTrue(deduplicator.isEmpty());
+        assertTrue(deduplicator.totalsByDay(UTC).isEmpty());
+    }
+
+    private static Instant at(int hour, int minute) {
+        return DAY.atTime(hour, minute).toInstant(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,135 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class SingleFlightTest {
+    private static final long TIMEOUT_SECONDS = 5;
+
+    @Test
+    public void overlappingCallerOnlyLoadsTheRest() throws Exception {
+        SingleFlight<Integer, String> flight = new SingleFlight<>();
+        CountDownLatch ownerLoading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<SortedSet<Integer>> joinerLoads = Collections.synchronizedList(new ArrayList<>());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Map<String, SortedSet<Integer>>> owner = executor.submit(() -> flight.join(keys(1, 2, 3), claimed -> {
+                ownerLoading.countDown();
+                release.await();
+                return "owner";
+            }));
+            assertTrue(ownerLoading.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+            Map<String, SortedSet<Integer>> joined = flight.join(keys(2, 3, 4), claimed -> {
+                joinerLoads.add(claimed);
+                release.countDown();
+                return "joiner";
+            });
+
+            assertEquals(Collections.singletonList(keys(4)), joinerLoads);
+            assertEquals(keys(2, 3), joined.get("owner"));
+            assertEquals(keys(4), joined.get("joiner"));
+            assertEquals(keys(1, 2, 3), owner.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).get("owner"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void interruptedOwnerHandsItsKeysToJoiners() throws Exception {
+        SingleFlight<Integer, String> flight = new SingleFlight<>();
+        CountDownLatch ownerLoading = new CountDownLatch(1);
+        AtomicReference<Thread> ownerThread = new AtomicReference<>();
+        List<SortedSet<Integer>> joinerLoads = Collections.synchronizedList(new ArrayList<>());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Map<String, SortedSet<Integer>>> owner = executor.submit(() -> flight.join(keys(1, 2, 3), claimed -> {
+                ownerThread.set(Thread.currentThread());
+                ownerLoading.countDown();
+                // Blocks until cancelled
+                new CountDownLatch(1).await();
+                return "owner";
+            }));
+            assertTrue(ownerLoading.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+            // Results are keyed by identity; copy to look them up by value
+            Map<String, SortedSet<Integer>> joined = new HashMap<>(flight.join(keys(2, 3, 4), claimed -> {
+                joinerLoads.add(claimed);
+                if (joinerLoads.size() == 1) {
+                    // Joined keys 2 and 3 by now; cancel the load they wait on
+                    ownerThread.get().interrupt();
+                }
+                return "joiner-" + joinerLoads.size();
+            }));
+
+            assertEquals(Arrays.asList(keys(4), keys(2, 3)), joinerLoads);
+            assertEquals(keys(4), joined.get("joiner-1"));
+            assertEquals(keys(2, 3), joined.get("joiner-2"));
+
+            try {
+                owner.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                throw new AssertionError("Owner should have been interrupted");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof InterruptedException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void loadFailureReachesJoiners() throws Exception {
+        SingleFlight<Integer, String> flight = new SingleFlight<>();
+        CountDownLatch ownerLoading = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("read failed");
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> flight.join(keys(1, 2), claimed -> {
+                ownerLoading.countDown();
+                fail.await();
+                throw failure;
+            }));
+            assertTrue(ownerLoading.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+            try {
+                flight.join(keys(2, 3), claimed -> {
+                    fail.countDown();
+                    return "joiner";
+                });
+                throw new AssertionError("Joiner should have seen the failure");
+            } catch (IllegalStateException e) {
+                assertSame(failure, e);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static SortedSet<Integer> keys(Integer... keys) {
+        return new TreeSet<>(Arrays.asList(keys));
+    }
+}
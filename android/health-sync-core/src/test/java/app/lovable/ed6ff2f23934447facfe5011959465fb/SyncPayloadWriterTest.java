@@ -0,0 +1,77 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class SyncPayloadWriterTest {
+    private static final LocalDate FROM = LocalDate.of(2025, 3, 3);
+    private static final LocalDate TO = LocalDate.of(2025, 3, 4);
+
+    @Test
+    public void writesDaysWithOnlyPresentMetrics() throws IOException {
+        DayAggregate full = new DayAggregate(FROM, 8000L, 64L, 50L, 140L, 7.5, 2100L);
+        DayAggregate stepsOnly = new DayAggregate(TO, 1200L, null, null, null, null, null);
+
+        assertEquals("{\"deviceId\":\"dev\",\"platform\":\"android\","
+                + "\"window\":{\"from\":\"2025-03-03\",\"to\":\"2025-03-04\"},\"data\":["
+                + "{\"date\":\"2025-03-03\",\"steps\":8000,\"heart_rate\":64,\"sleep_hours\":7.5,\"calories\":2100},"
+                + "{\"date\":\"2025-03-04\",\"steps\":1200}]}",
+            write(new SyncPayload("dev", "android", FROM, TO, Arrays.asList(full, stepsOnly))));
+    }
+
+    @Test
+    public void writesHeartRateSeriesAsParallelArrays() throws IOException {
+        HeartRateSeries series = new HeartRateSeries(FROM, 15,
+            new int[] { 0, 4 }, new int[] { 55, 60 }, new int[] { 70, 90 }, new int[] { 62, 75 }, new int[] { 3, 12 });
+        DayAggregate day = new DayAggregate(FROM, null, 68L, 55L, 90L, null, null, series);
+
+        assertEquals("{\"deviceId\":\"dev\",\"platform\":\"android\","
+                + "\"window\":{\"from\":\"2025-03-03\",\"to\":\"2025-03-03\"},\"data\":["
+                + "{\"date\":\"2025-03-03\",\"heart_rate\":68,\"heart_rate_series\":{\"bucket_minutes\":15,"
+                + "\"offset\":[0,4],\"min\":[55,60],\"max\":[70,90],\"avg\":[62,75],\"count\":[3,12]}}]}",
+            write(new SyncPayload("dev", "android", FROM, FROM, Collections.singletonList(day))));
+    }
+
+    @Test
+    public void escapesStrings() throws IOException {
+        String deviceId = "a\"b\\c\nd\re\tf\u0001g\u2028h\u2029i\u00e9";
+
+        assertEquals("{\"deviceId\":\"a\\\"b\\\\c\\nd\\re\\tf\\u0001g\\u2028h\\u2029i\u00e9\","
+                + "\"platform\":\"android\",\"window\":{\"from\":\"2025-03-03\",\"to\":\"2025-03-03\"},\"data\":[]}",
+            write(new SyncPayload(deviceId, "android", FROM, FROM, Collections.<DayAggregate>emptyList())));
+    }
+
+    @Test
+    public void measuredSizesAddUpToWrittenBytes() throws IOException {
+        HeartRateSeries series = new HeartRateSeries(TO, 5,
+            new int[] { 1, 2, 3 }, new int[] { 50, 51, 52 }, new int[] { 80, 81, 82 }, new int[] { 60, 61, 62 },
+            new int[] { 10, 11, 12 });
+        DayAggregate first = new DayAggregate(FROM, 8000L, 64L, 50L, 140L, 7.25, 2100L);
+        DayAggregate second = new DayAggregate(TO, null, 61L, 50L, 82L, null, null, series);
+        SyncPayload payload = new SyncPayload("d\u00e9vice", "android", FROM, TO, Arrays.asList(first, second));
+
+        long measured = SyncPayloadWriter.measureEnvelope(payload)
+            + SyncPayloadWriter.measureDay(first) + SyncPayloadWriter.measureDay(second);
+
+        // measureDay counts a separating comma for every day, the first one has none
+        assertEquals(bytes(payload).length + 1, measured);
+    }
+
+    private static String write(SyncPayload payload) throws IOException {
+        return new String(bytes(payload), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(SyncPayload payload) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SyncPayloadWriter.write(payload, out);
+        return out.toByteArray();
+    }
+}
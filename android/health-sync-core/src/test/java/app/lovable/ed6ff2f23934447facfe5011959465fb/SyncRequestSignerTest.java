@@ -0,0 +1,51 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class SyncRequestSignerTest {
+    // RFC 4231, test case 2
+    private static final String KEY = "4a656665";
+    private static final byte[] DATA = "what do ya want for nothing?".getBytes(StandardCharsets.US_ASCII);
+    private static final String MAC = "5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843";
+
+    @Test
+    public void signMatchesReferenceVector() {
+        assertEquals(MAC, SyncRequestSigner.forSecret(KEY).sign(DATA));
+    }
+
+    @Test
+    public void signingStreamMatchesSign() throws IOException {
+        SyncRequestSigner signer = SyncRequestSigner.forSecret(KEY);
+        OutputStream stream = signer.signingStream();
+        stream.write(DATA, 0, 10);
+        stream.write(DATA, 10, DATA.length - 10);
+
+        assertEquals(MAC, signer.finish());
+    }
+
+    @Test
+    public void signDiscardsAbandonedSignature() {
+        SyncRequestSigner signer = SyncRequestSigner.forSecret(KEY);
+        signer.update(new byte[] { 1, 2, 3 }, 0, 3);
+
+        assertEquals(MAC, signer.sign(DATA));
+    }
+
+    @Test
+    public void newSecretReplacesSigner() {
+        SyncRequestSigner first = SyncRequestSigner.forSecret(KEY);
+        assertSame(first, SyncRequestSigner.forSecret(KEY));
+
+        SyncRequestSigner second = SyncRequestSigner.forSecret("00112233");
+        assertNotSame(first, second);
+        assertNotSame(first, SyncRequestSigner.forSecret(KEY));
+    }
+}
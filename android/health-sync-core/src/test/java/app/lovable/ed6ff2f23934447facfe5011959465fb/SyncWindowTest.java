@@ -0,0 +1,49 @@
+package app.lovable.ed6ff2f23934447facfe5011959465fb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.SortedSet;
+
+import org.junit.Test;
+
+public class SyncWindowTest {
+    private static final LocalDate TODAY = LocalDate.of(2025, 3, 10);
+
+    @Test
+    public void fullWindowCoversWindowDaysBackToToday() {
+        SortedSet<LocalDate> days = SyncWindow.daysToSync(TODAY, 7, true, Collections.<LocalDate>emptyList());
+
+        assertEquals(8, days.size());
+        assertEquals(LocalDate.of(2025, 3, 3), days.first());
+        assertEquals(TODAY, days.last());
+    }
+
+    @Test
+    public void touchedDaysOnlyWithoutFullWindow() {
+        SortedSet<LocalDate> days = SyncWindow.daysToSync(TODAY, 7, false,
+            Arrays.asList(LocalDate.of(2025, 1, 2), TODAY));
+
+        assertEquals(Arrays.asList(LocalDate.of(2025, 1, 2), TODAY), Arrays.asList(days.toArray()));
+    }
+
+    @Test
+    public void touchedDaysOutsideWindowAreAdded() {
+        SortedSet<LocalDate> days = SyncWindow.daysToSync(TODAY, 7, true,
+            Arrays.asList(LocalDate.of(2025, 2, 1), LocalDate.of(2025, 3, 5)));
+
+        assertEquals(9, days.size());
+        assertEquals(LocalDate.of(2025, 2, 1), days.first());
+    }
+
+    @Test
+    public void futureDaysAreNeverSynced() {
+        SortedSet<LocalDate> days = SyncWindow.daysToSync(TODAY, 0, false,
+            Arrays.asList(TODAY.plusDays(1), TODAY.plusDays(30)));
+
+        assertTrue(days.isEmpty());
+    }
+}
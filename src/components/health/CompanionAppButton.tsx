@@ -21,7 +21,8 @@ export function CompanionAppButton() {
         if (Capacitor.getPlatform() === 'android') {
           // Para Android, usar o plugin personalizado
           const result = await HealthCompanionLauncher.launch({
-            jwtToken: session.access_token
+            jwtToken: session.access_token,
+            refreshToken: session.refresh_token
           });
           
           if (result.success) {
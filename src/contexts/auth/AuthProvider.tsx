@@ -6,6 +6,7 @@ import { supabase } from '@/integrations/supabase/client';
 import { toast } from '@/lib/toast';
 import { AuthContext } from './AuthContext';
 import { checkAdminStatus, ensureProfileExists, fetchUserProfile } from './profileUtils';
+import { adoptCompanionSession, clearCompanionSession, listenForCompanionRefresh, shareSessionWithCompanion } from './companionSession';
 
 export function AuthProvider({ children }: { children: React.ReactNode }) {
   const [user, setUser] = useState<User | null>(null);
@@ -58,6 +59,8 @@ export function AuthProvider({ children }: { children: React.ReactNode }) {
         
         if (!mounted) return;
         
+        shareSessionWithCompanion(event, currentSession);
+        
         // Update session and user state synchronously
         setSession(currentSession);
         setUser(currentSession?.user ?? null);
@@ -82,9 +85,13 @@ export function AuthProvider({ children }: { children: React.ReactNode }) {
       }
     );
 
+    const stopCompanionListener = listenForCompanionRefresh();
+
     // Check for existing session
     const initSession = async () => {
       try {
+        await adoptCompanionSession();
+        
         console.log("Checking for existing session");
         const { data: { session: currentSession } } = await supabase.auth.getSession();
         
@@ -125,6 +132,7 @@ export function AuthProvider({ children }: { children: React.ReactNode }) {
     return () => {
       mounted = false;
       subscription?.unsubscribe();
+      stopCompanionListener();
     };
   }, [updateAdminStatus, refreshUserProfile]);
 
@@ -291,6 +299,9 @@ export function AuthProvider({ children }: { children: React.ReactNode }) {
       // Clear cached user data
       localStorage.removeItem('user_cache');
       
+      // Background syncs stop with the session
+      await clearCompanionSession();
+      
       // Clear local auth state first for immediate UI feedback
       setUser(null);
       setSession(null);
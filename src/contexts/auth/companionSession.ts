@@ -0,0 +1,59 @@
+import { Capacitor } from '@capacitor/core';
+import type { AuthChangeEvent, Session } from '@supabase/supabase-js';
+import { supabase } from '@/integrations/supabase/client';
+import HealthCompanionLauncher from '@/plugins/HealthCompanionLauncher';
+
+// The Android companion syncs in the background with this app's Supabase
+// session and refreshes it on its own when it is about to expire. Supabase
+// refresh tokens are single use, so whichever side refreshes hands the new
+// pair to the other.
+
+const isAndroid = () => Capacitor.getPlatform() === 'android';
+
+// Picks up a session the companion refreshed while the app was closed.
+export async function adoptCompanionSession() {
+  if (!isAndroid()) return;
+  try {
+    const { accessToken, refreshToken } = await HealthCompanionLauncher.takeRefreshedSession();
+    if (accessToken && refreshToken) {
+      console.log("Adopting session refreshed by the health companion");
+      await supabase.auth.setSession({ access_token: accessToken, refresh_token: refreshToken });
+    }
+  } catch (error) {
+    console.error("Error adopting companion session:", error);
+  }
+}
+
+// Called from onAuthStateChange. Sign-out is handled by clearCompanionSession,
+// so a failed refresh here does not also stop the companion.
+export function shareSessionWithCompanion(event: AuthChangeEvent, session: Session | null) {
+  if (!isAndroid() || !session) return;
+  if (event !== 'SIGNED_IN' && event !== 'TOKEN_REFRESHED') return;
+  HealthCompanionLauncher.updateSession({
+    accessToken: session.access_token,
+    refreshToken: session.refresh_token,
+  }).catch(error => console.error("Error sharing session with companion:", error));
+}
+
+export async function clearCompanionSession() {
+  if (!isAndroid()) return;
+  try {
+    await HealthCompanionLauncher.clearSession();
+  } catch (error) {
+    console.error("Error clearing companion session:", error);
+  }
+}
+
+// Follows refreshes the companion makes while the app is open. Returns the unsubscribe.
+export function listenForCompanionRefresh(): () => void {
+  if (!isAndroid()) return () => {};
+  const handle = HealthCompanionLauncher.addListener('sessionRefreshed', ({ accessToken, refreshToken }) => {
+    if (accessToken && refreshToken) {
+      supabase.auth.setSession({ access_token: accessToken, refresh_token: refreshToken })
+        .catch(error => console.error("Error adopting companion session:", error));
+    }
+  });
+  return () => {
+    handle.then(h => h.remove());
+  };
+}
@@ -1,6 +1,12 @@
 import { useState } from 'react';
 import { toast } from '@/hooks/use-toast';
 import HealthConnect from '@/plugins/HealthConnect';
+import type { PluginListenerHandle } from '@capacitor/core';
+import type {
+  HealthConnectDay,
+  HealthDataChunkEvent,
+  HealthDataCompleteEvent
+} from '@/plugins/HealthConnect';
 
 declare global {
   interface Window {
@@ -73,10 +79,13 @@ export function useHealthIntegration() {
       const startDateStr = startDate.toISOString().split('T')[0];
       const endDateStr = endDate.toISOString().split('T')[0];
 
-      const healthData = await HealthConnect.getHealthData({
+      const { data: healthData, deferredDays } = await HealthConnect.getHealthData({
         startDate: startDateStr,
         endDate: endDateStr
       });
+      if (deferredDays?.length) {
+        console.warn(`Health Connect read quota reached, ${deferredDays.length} days deferred`);
+      }
 
       return healthData;
     } catch (error) {
@@ -87,6 +96,76 @@ export function useHealthIntegration() {
     }
   };
 
+  // Streams long ranges chunk by chunk so charts can render progressively.
+  // `done` resolves with every received day once the stream completes; call
+  // cancel() to stop early.
+  const streamHealthConnectData = (
+    startDate: Date,
+    endDate: Date,
+    onChunk: (days: HealthConnectDay[]) => void
+  ) => {
+    let streamId: string | null = null;
+    let cancelled = false;
+    // Events can arrive before streamHealthData resolves with our stream ID
+    const early: (HealthDataChunkEvent | HealthDataCompleteEvent)[] = [];
+    const received: HealthConnectDay[] = [];
+    const listeners: PluginListenerHandle[] = [];
+
+    const done = new Promise<HealthConnectDay[]>((resolve, reject) => {
+      const handle = (event: HealthDataChunkEvent | HealthDataCompleteEvent) => {
+        if ('data' in event) {
+          received.push(...event.data);
+          onChunk(event.data);
+          return;
+        }
+        listeners.forEach(listener => listener.remove());
+        if (event.error) {
+          reject(new Error(event.error));
+        } else {
+          resolve(received);
+        }
+      };
+
+      const route = (event: HealthDataChunkEvent | HealthDataCompleteEvent) => {
+        if (streamId === null) {
+          early.push(event);
+        } else if (event.streamId === streamId) {
+          handle(event);
+        }
+      };
+
+      (async () => {
+        try {
+          listeners.push(await HealthConnect.addListener('healthDataChunk', route));
+          listeners.push(await HealthConnect.addListener('healthDataComplete', route));
+
+          const result = await HealthConnect.streamHealthData({
+            startDate: startDate.toISOString().split('T')[0],
+            endDate: endDate.toISOString().split('T')[0]
+          });
+          streamId = result.streamId;
+          early.filter(event => event.streamId === streamId).forEach(handle);
+
+          if (cancelled) {
+            await HealthConnect.cancelHealthDataStream({ streamId });
+          }
+        } catch (error) {
+          listeners.forEach(listener => listener.remove());
+          reject(error);
+        }
+      })();
+    });
+
+    const cancel = async () => {
+      cancelled = true;
+      if (streamId) {
+        await HealthConnect.cancelHealthDataStream({ streamId });
+      }
+    };
+
+    return { done, cancel };
+  };
+
   // Apple HealthKit Integration (for iOS PWA)
   const connectAppleHealthKit = async () => {
     try {
@@ -226,6 +305,7 @@ export function useHealthIntegration() {
     connectHealthConnect,
     connectAppleHealthKit,
     fetchHealthConnectData,
+    streamHealthConnectData,
     fetchAppleHealthKitData,
     syncHealthData,
     disconnect
@@ -37,7 +37,7 @@ export function useHealthSync() {
       const startDate = new Date();
       startDate.setDate(startDate.getDate() - 30);
 
-      const healthData = await HealthConnect.getHealthData({
+      const { data: healthData } = await HealthConnect.getHealthData({
         startDate: startDate.toISOString().split('T')[0],
         endDate: endDate.toISOString().split('T')[0]
       });
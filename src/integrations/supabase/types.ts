@@ -846,6 +846,7 @@ export type Database = {
           created_at: string
           date: string
           heart_rate: number | null
+          heart_rate_series: Json | null
           id: string
           sleep_hours: number | null
           steps: number | null
@@ -856,6 +857,7 @@ export type Database = {
           created_at?: string
           date: string
           heart_rate?: number | null
+          heart_rate_series?: Json | null
           id?: string
           sleep_hours?: number | null
           steps?: number | null
@@ -866,6 +868,7 @@ export type Database = {
           created_at?: string
           date?: string
           heart_rate?: number | null
+          heart_rate_series?: Json | null
           id?: string
           sleep_hours?: number | null
           steps?: number | null
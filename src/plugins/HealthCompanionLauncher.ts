@@ -1,14 +1,41 @@
 import { registerPlugin } from '@capacitor/core';
+import type { PluginListenerHandle } from '@capacitor/core';
+
+export interface CompanionSession {
+  accessToken?: string;
+  refreshToken?: string;
+}
 
 export interface HealthCompanionLauncherPlugin {
   /**
-   * Launch the Health Companion Activity with JWT token
+   * Launch the Health Companion Activity with the current Supabase session
+   */
+  launch(options: { jwtToken: string; refreshToken?: string }): Promise<{ success: boolean }>;
+
+  /**
+   * Hand the session to the background sync after every sign-in and refresh.
+   * Supabase rotates refresh tokens, so the companion must not keep an old one.
+   */
+  updateSession(options: { accessToken: string; refreshToken?: string }): Promise<void>;
+
+  /**
+   * Forget the session on sign-out; background syncs stop until the next sign-in
+   */
+  clearSession(): Promise<void>;
+
+  /**
+   * The session the background sync refreshed while the app was closed, if any
    */
-  launch(options: { jwtToken: string }): Promise<{ success: boolean }>;
+  takeRefreshedSession(): Promise<CompanionSession>;
+
+  addListener(
+    eventName: 'sessionRefreshed',
+    listenerFunc: (event: CompanionSession) => void,
+  ): Promise<PluginListenerHandle>;
 }
 
 const HealthCompanionLauncher = registerPlugin<HealthCompanionLauncherPlugin>('HealthCompanionLauncher', {
   web: () => import('./HealthCompanionLauncherWeb').then(m => new m.HealthCompanionLauncherWeb()),
 });
 
-export default HealthCompanionLauncher;
\ No newline at end of file
+export default HealthCompanionLauncher;
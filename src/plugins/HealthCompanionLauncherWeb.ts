@@ -1,9 +1,21 @@
 import { WebPlugin } from '@capacitor/core';
-import type { HealthCompanionLauncherPlugin } from './HealthCompanionLauncher';
+import type { CompanionSession, HealthCompanionLauncherPlugin } from './HealthCompanionLauncher';
 
 export class HealthCompanionLauncherWeb extends WebPlugin implements HealthCompanionLauncherPlugin {
   async launch(): Promise<{ success: boolean }> {
     console.log('Health Companion Launcher not available on web');
     return { success: false };
   }
-}
\ No newline at end of file
+
+  async updateSession(): Promise<void> {
+    // No background sync on web
+  }
+
+  async clearSession(): Promise<void> {
+    // No background sync on web
+  }
+
+  async takeRefreshedSession(): Promise<CompanionSession> {
+    return {};
+  }
+}
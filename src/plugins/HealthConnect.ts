@@ -1,4 +1,103 @@
 import { registerPlugin } from '@capacitor/core';
+import type { PluginListenerHandle } from '@capacitor/core';
+
+export interface HealthConnectDay {
+  date: string;
+  steps?: number;
+  heartRate?: number;
+  heartRateMin?: number;
+  heartRateMax?: number;
+  sleepHours?: number;
+  calories?: number;
+}
+
+export interface HealthDataChunkEvent {
+  streamId: string;
+  index: number;
+  data: HealthConnectDay[];
+}
+
+export interface HealthDataCompleteEvent {
+  streamId: string;
+  chunks?: number;
+  cancelled: boolean;
+  error?: string;
+}
+
+export interface SyncStatus {
+  job: 'manual' | 'periodic' | 'retry';
+  /** WorkManager state: ENQUEUED, RUNNING, SUCCEEDED, FAILED, BLOCKED or CANCELLED */
+  state: string;
+  attempt: number;
+  phase?: 'starting' | 'collecting' | 'uploading' | 'done' | 'failed' | 'retry_scheduled';
+  daysCollected?: number;
+  daysUploaded?: number;
+  bytesSent?: number;
+  collectMillis?: number;
+  uploadMillis?: number;
+  error?: string;
+  /** ISO timestamp of the delayed retry, set when phase is retry_scheduled */
+  nextRetryAt?: string;
+}
+
+export interface SyncRunMetrics {
+  startedAt: string;
+  attempt: number;
+  outcome: 'success' | 'retry' | 'failure';
+  totalMillis: number;
+  credentialMillis: number;
+  changesMillis: number;
+  aggregateMillis: number;
+  heartRateMillis: number;
+  outboxMillis: number;
+  signMillis: number;
+  httpMillis: number;
+  httpMaxMillis: number;
+  batches: number;
+  failedBatches: number;
+  bytesSent: number;
+  daysUploaded: number;
+}
+
+export interface MetricPercentiles {
+  p50?: number;
+  p95?: number;
+}
+
+export interface SyncMetricsResult {
+  device: { manufacturer: string; model: string; sdkInt: number };
+  summary: {
+    runs: number;
+    successRate: number;
+    totalMillis: MetricPercentiles;
+    credentialMillis: MetricPercentiles;
+    changesMillis: MetricPercentiles;
+    aggregateMillis: MetricPercentiles;
+    heartRateMillis: MetricPercentiles;
+    signMillis: MetricPercentiles;
+    httpMillis: MetricPercentiles;
+    httpMaxMillis: MetricPercentiles;
+    bytesSent: MetricPercentiles;
+  };
+  /** Newest run first */
+  runs: SyncRunMetrics[];
+}
+
+export interface WorkoutInput {
+  /** Stable ID from the app; repeated writes of the same ID replace the record */
+  id: string;
+  /** ISO timestamps */
+  startTime: string;
+  endTime: string;
+  /** A Health Connect ExerciseSessionRecord.EXERCISE_TYPE_* value; defaults to other workout */
+  exerciseType?: number;
+  title?: string;
+  notes?: string;
+  /** Kilocalories; no calories record is written without it */
+  calories?: number;
+  /** ISO timestamp of the last edit, so a newer write replaces an older one */
+  updatedAt?: string;
+}
 
 export interface HealthConnectPlugin {
   /**
@@ -7,14 +106,22 @@ export interface HealthConnectPlugin {
   isAvailable(): Promise<{ available: boolean }>;
 
   /**
-   * Request permissions for Health Connect
+   * Request permissions for Health Connect, including writing workouts
    */
   requestPermissions(): Promise<{ granted: boolean }>;
 
   /**
-   * Check current permissions status
+   * Check current permissions status. `granted` covers reading; `writeGranted`
+   * is needed by `writeWorkouts`.
    */
-  checkPermissions(): Promise<{ granted: boolean }>;
+  checkPermissions(): Promise<{ granted: boolean; writeGranted?: boolean }>;
+
+  /**
+   * Write completed workouts as exercise sessions and calories burned. Many
+   * workouts go out in a few batched inserts; workouts of a failed batch are
+   * listed in `failed` and can be written again safely.
+   */
+  writeWorkouts(options: { workouts: WorkoutInput[] }): Promise<{ written: number; failed: string[] }>;
 
   /**
    * Get health data for a date range
@@ -22,13 +129,71 @@ export interface HealthConnectPlugin {
   getHealthData(options: {
     startDate: string;
     endDate: string;
+    /**
+     * Package names of the apps to trust when their records overlap, most
+     * trusted first. When set, steps, sleep and calories are de-duplicated
+     * on the device instead of using Health Connect's own priority order.
+     */
+    originPriority?: string[];
   }): Promise<{
-    steps?: number;
-    heartRate?: number;
-    sleepHours?: number;
-    calories?: number;
-    date: string;
-  }[]>;
+    data: HealthConnectDay[];
+    /**
+     * Days left unread because the Health Connect read quota ran out; request
+     * them again after `retryAfterMs`. Today and the requested range are read
+     * first.
+     */
+    deferredDays?: string[];
+    retryAfterMs?: number;
+  }>;
+
+  /**
+   * Stream health data for a date range in chunks of days. Collection runs in
+   * the background; days arrive through `healthDataChunk` events followed by
+   * a single `healthDataComplete` event for the returned stream.
+   */
+  streamHealthData(options: {
+    startDate: string;
+    endDate: string;
+    chunkDays?: number;
+    /** Same as for `getHealthData` */
+    originPriority?: string[];
+  }): Promise<{ streamId: string }>;
+
+  /**
+   * Stop a running health data stream
+   */
+  cancelHealthDataStream(options: { streamId: string }): Promise<{ cancelled: boolean }>;
+
+  addListener(
+    eventName: 'healthDataChunk',
+    listenerFunc: (event: HealthDataChunkEvent) => void,
+  ): Promise<PluginListenerHandle>;
+
+  addListener(
+    eventName: 'healthDataComplete',
+    listenerFunc: (event: HealthDataCompleteEvent) => void,
+  ): Promise<PluginListenerHandle>;
+
+  /**
+   * Start a background upload to the server. Repeated requests join the one
+   * already pending; progress arrives through `syncProgress` events.
+   */
+  requestSync(): Promise<{ requested: boolean }>;
+
+  /**
+   * Latest state of the manual, the periodic and the pending retry sync job
+   */
+  getSyncStatus(): Promise<{ manual?: SyncStatus; periodic?: SyncStatus; retry?: SyncStatus }>;
+
+  /**
+   * Timings of the most recent background syncs, with p50/p95 summaries
+   */
+  getSyncMetrics(options?: { limit?: number }): Promise<SyncMetricsResult>;
+
+  addListener(
+    eventName: 'syncProgress',
+    listenerFunc: (event: SyncStatus) => void,
+  ): Promise<PluginListenerHandle>;
 
   /**
    * Sync health data to server
@@ -1,5 +1,5 @@
 import { WebPlugin } from '@capacitor/core';
-import type { HealthConnectPlugin } from './HealthConnect';
+import type { HealthConnectDay, HealthConnectPlugin, SyncMetricsResult, SyncStatus } from './HealthConnect';
 
 export class HealthConnectWeb extends WebPlugin implements HealthConnectPlugin {
   async isAvailable(): Promise<{ available: boolean }> {
@@ -17,9 +17,34 @@ export class HealthConnectWeb extends WebPlugin implements HealthConnectPlugin {
     return { granted: false };
   }
 
-  async getHealthData(): Promise<any[]> {
+  async getHealthData(): Promise<{ data: HealthConnectDay[] }> {
     console.log('Health Connect data not available on web');
-    return [];
+    return { data: [] };
+  }
+
+  async streamHealthData(): Promise<{ streamId: string }> {
+    console.log('Health Connect data not available on web');
+    throw this.unavailable('Health Connect is not available on web');
+  }
+
+  async cancelHealthDataStream(): Promise<{ cancelled: boolean }> {
+    return { cancelled: false };
+  }
+
+  async requestSync(): Promise<{ requested: boolean }> {
+    throw this.unavailable('Health Connect is not available on web');
+  }
+
+  async getSyncStatus(): Promise<{ manual?: SyncStatus; periodic?: SyncStatus; retry?: SyncStatus }> {
+    return {};
+  }
+
+  async getSyncMetrics(): Promise<SyncMetricsResult> {
+    throw this.unavailable('Health Connect is not available on web');
+  }
+
+  async writeWorkouts(): Promise<{ written: number; failed: string[] }> {
+    throw this.unavailable('Health Connect is not available on web');
   }
 
   async syncHealthData(): Promise<{ success: boolean; message?: string }> {
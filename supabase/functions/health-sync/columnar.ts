@@ -0,0 +1,218 @@
+// Decoder for the companion app's columnar sync encoding. Layout (see
+// ColumnarPayloadWriter.java):
+//
+//   "HSC" version
+//   deviceId, platform          varint byte length + UTF-8
+//   window from                 zigzag varint epoch day
+//   window length               zigzag varint days
+//   day count                   varint
+//   dates                       zigzag varint delta from the previous date (first from window from)
+//   steps, heart_rate,
+//   sleep_hours (tenths),
+//   calories                    per column: presence bitmap (LSB first), then
+//                               zigzag varint deltas between present values
+//   heart_rate_series           version 2 only: presence bitmap over the days,
+//                               then per present day the bucket minutes, the
+//                               bucket count, varint offset gaps, and zigzag
+//                               varint deltas for min, max and avg, then counts
+
+export const COLUMNAR_CONTENT_TYPE = 'application/vnd.health-sync.columnar'
+
+const VERSION = 1
+const VERSION_WITH_SERIES = 2
+const DAY_MS = 86_400_000
+
+export interface HeartRateSeriesInput {
+  bucket_minutes: number;
+  offset: number[];
+  min: number[];
+  max: number[];
+  avg: number[];
+  count: number[];
+}
+
+export interface ColumnarDay {
+  date: string;
+  steps?: number;
+  heart_rate?: number;
+  sleep_hours?: number;
+  calories?: number;
+  heart_rate_series?: HeartRateSeriesInput;
+}
+
+export interface ColumnarSyncData {
+  deviceId: string;
+  platform: 'android' | 'ios';
+  window: {
+    from: string;
+    to: string;
+  };
+  data: ColumnarDay[];
+}
+
+class Reader {
+  private offset = 0
+
+  constructor(private readonly bytes: Uint8Array) {}
+
+  byte(): number {
+    if (this.offset >= this.bytes.length) {
+      throw new Error('Truncated columnar body')
+    }
+    return this.bytes[this.offset++]
+  }
+
+  // Multiplication instead of shifts keeps values above 2^31 intact
+  varint(): number {
+    let value = 0
+    let scale = 1
+    for (;;) {
+      const b = this.byte()
+      value += (b & 0x7f) * scale
+      if ((b & 0x80) === 0) {
+        return value
+      }
+      scale *= 128
+      if (scale > Number.MAX_SAFE_INTEGER) {
+        throw new Error('Varint out of range')
+      }
+    }
+  }
+
+  signed(): number {
+    const value = this.varint()
+    return value % 2 === 0 ? value / 2 : -(value + 1) / 2
+  }
+
+  string(): string {
+    const length = this.varint()
+    if (this.offset + length > this.bytes.length) {
+      throw new Error('Truncated columnar body')
+    }
+    const value = new TextDecoder().decode(this.bytes.subarray(this.offset, this.offset + length))
+    this.offset += length
+    return value
+  }
+
+  take(length: number): Uint8Array {
+    if (this.offset + length > this.bytes.length) {
+      throw new Error('Truncated columnar body')
+    }
+    const value = this.bytes.subarray(this.offset, this.offset + length)
+    this.offset += length
+    return value
+  }
+
+  get remaining(): number {
+    return this.bytes.length - this.offset
+  }
+}
+
+function toIsoDate(epochDay: number): string {
+  return new Date(epochDay * DAY_MS).toISOString().slice(0, 10)
+}
+
+function readColumn(reader: Reader, count: number): (number | undefined)[] {
+  const presence = reader.take(Math.ceil(count / 8))
+  const values: (number | undefined)[] = new Array(count)
+  let previous = 0
+  for (let i = 0; i < count; i++) {
+    if (presence[i >> 3] & (1 << (i & 7))) {
+      previous += reader.signed()
+      values[i] = previous
+    }
+  }
+  return values
+}
+
+function readDeltas(reader: Reader, count: number): number[] {
+  const values: number[] = new Array(count)
+  let previous = 0
+  for (let i = 0; i < count; i++) {
+    previous += reader.signed()
+    values[i] = previous
+  }
+  return values
+}
+
+function readSeries(reader: Reader): HeartRateSeriesInput {
+  const bucketMinutes = reader.varint()
+  const size = reader.varint()
+  if (size > reader.remaining) {
+    throw new Error('Truncated columnar body')
+  }
+  const offset: number[] = new Array(size)
+  let previousOffset = 0
+  for (let i = 0; i < size; i++) {
+    previousOffset += reader.varint()
+    offset[i] = previousOffset
+  }
+  const min = readDeltas(reader, size)
+  const max = readDeltas(reader, size)
+  const avg = readDeltas(reader, size)
+  const count: number[] = new Array(size)
+  for (let i = 0; i < size; i++) {
+    count[i] = reader.varint()
+  }
+  return { bucket_minutes: bucketMinutes, offset, min, max, avg, count }
+}
+
+export function decodeColumnar(bytes: Uint8Array): ColumnarSyncData {
+  const reader = new Reader(bytes)
+  if (reader.byte() !== 0x48 || reader.byte() !== 0x53 || reader.byte() !== 0x43) {
+    throw new Error('Not a columnar body')
+  }
+  const version = reader.byte()
+  if (version !== VERSION && version !== VERSION_WITH_SERIES) {
+    throw new Error(`Unsupported columnar version ${version}`)
+  }
+
+  const deviceId = reader.string()
+  const platform = reader.string() as 'android' | 'ios'
+  const windowFrom = reader.signed()
+  const windowTo = windowFrom + reader.signed()
+
+  const count = reader.varint()
+  // Every day takes at least one byte, so a bogus count cannot allocate much
+  if (count > reader.remaining) {
+    throw new Error('Truncated columnar body')
+  }
+  const dates: number[] = new Array(count)
+  let previousDate = windowFrom
+  for (let i = 0; i < count; i++) {
+    previousDate += reader.signed()
+    dates[i] = previousDate
+  }
+
+  const steps = readColumn(reader, count)
+  const heartRate = readColumn(reader, count)
+  const sleepTenths = readColumn(reader, count)
+  const calories = readColumn(reader, count)
+
+  const series: (HeartRateSeriesInput | undefined)[] = new Array(count)
+  if (version === VERSION_WITH_SERIES) {
+    const presence = reader.take(Math.ceil(count / 8))
+    for (let i = 0; i < count; i++) {
+      if (presence[i >> 3] & (1 << (i & 7))) {
+        series[i] = readSeries(reader)
+      }
+    }
+  }
+
+  const data: ColumnarDay[] = dates.map((epochDay, i) => {
+    const day: ColumnarDay = { date: toIsoDate(epochDay) }
+    if (steps[i] !== undefined) day.steps = steps[i]
+    if (heartRate[i] !== undefined) day.heart_rate = heartRate[i]
+    if (sleepTenths[i] !== undefined) day.sleep_hours = sleepTenths[i]! / 10
+    if (calories[i] !== undefined) day.calories = calories[i]
+    if (series[i] !== undefined) day.heart_rate_series = series[i]
+    return day
+  })
+
+  return {
+    deviceId,
+    platform,
+    window: { from: toIsoDate(windowFrom), to: toIsoDate(windowTo) },
+    data,
+  }
+}
@@ -0,0 +1,54 @@
+// Fixed vectors shared with DayDigestTest.java in android/health-sync-core;
+// change both together or the device and the server stop agreeing on what
+// changed.
+//
+//   deno test supabase/functions/health-sync/digest.test.ts
+
+import { assertEquals } from 'https://deno.land/std@0.190.0/testing/asserts.ts'
+import { dayDigests, fnv1a64 } from './digest.ts'
+
+Deno.test('fnv1a64 matches reference values', () => {
+  assertEquals(fnv1a64(''), 'cbf29ce484222325')
+  assertEquals(fnv1a64('a'), 'af63dc4c8601ec8c')
+})
+
+Deno.test('full day vectors', () => {
+  assertEquals(dayDigests({
+    steps: 8000,
+    heart_rate: 64,
+    sleep_hours: 7.25,
+    calories: 2100,
+    heart_rate_series: {
+      bucket_minutes: 15,
+      offset: [0, 4],
+      min: [55, 60],
+      max: [70, 90],
+      avg: [62, 75],
+      count: [3, 12],
+    },
+  }), {
+    steps: 'dd0c53be2d670602',
+    heart_rate: '5dc80ada46ca9ed6',
+    sleep_hours: 'f3aa4f17ea407f6c',
+    calories: 'e95b7d6d9e59d828',
+    heart_rate_series: 'ee3b8b90ff680c73',
+  })
+})
+
+Deno.test('sleep is digested in rounded tenths', () => {
+  assertEquals(dayDigests({ sleep_hours: 7.24 }).sleep_hours, 'f3aa5017ea40811f')
+  // 72.5 rounds up on both sides, so it matches 7.26
+  assertEquals(dayDigests({ sleep_hours: 7.25 }).sleep_hours, 'f3aa4f17ea407f6c')
+  assertEquals(dayDigests({ sleep_hours: 7.26 }).sleep_hours, 'f3aa4f17ea407f6c')
+  assertEquals(dayDigests({ sleep_hours: 0 }).sleep_hours, 'e1ff279e5cef0fbe')
+  assertEquals(dayDigests({ sleep_hours: 12 }).sleep_hours, '38c869a3011e47eb')
+})
+
+Deno.test('empty series vector', () => {
+  const series = { bucket_minutes: 5, offset: [], min: [], max: [], avg: [], count: [] }
+  assertEquals(dayDigests({ heart_rate_series: series }).heart_rate_series, 'd102c732757ff920')
+})
+
+Deno.test('absent metrics have no digest', () => {
+  assertEquals(dayDigests({ steps: 1200 }), { steps: fnv1a64('steps:1200') })
+})
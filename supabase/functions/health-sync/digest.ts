@@ -0,0 +1,44 @@
+// Per-(day, metric) content digests, computed exactly as DayDigest.java does:
+// FNV-1a 64 over the UTF-8 of "<metric>:<canonical value>", as 16 hex digits.
+// The companion app keeps the digests the server returns and leaves days out
+// of later uploads while their digests still match. digest.test.ts and
+// DayDigestTest.java check the same fixed vectors.
+
+import type { HeartRateSeriesInput } from './columnar.ts'
+
+const FNV_OFFSET = 0xcbf29ce484222325n
+const FNV_PRIME = 0x100000001b3n
+const MASK_64 = 0xffffffffffffffffn
+
+export interface DigestInput {
+  steps?: number;
+  heart_rate?: number;
+  sleep_hours?: number;
+  calories?: number;
+  heart_rate_series?: HeartRateSeriesInput;
+}
+
+export function fnv1a64(text: string): string {
+  let hash = FNV_OFFSET
+  for (const byte of new TextEncoder().encode(text)) {
+    hash ^= BigInt(byte)
+    hash = (hash * FNV_PRIME) & MASK_64
+  }
+  return hash.toString(16).padStart(16, '0')
+}
+
+// Only metrics present in the day get a digest
+export function dayDigests(day: DigestInput): Record<string, string> {
+  const digests: Record<string, string> = {}
+  if (day.steps != null) digests.steps = fnv1a64(`steps:${day.steps}`)
+  if (day.heart_rate != null) digests.heart_rate = fnv1a64(`heart_rate:${day.heart_rate}`)
+  // Tenths of an hour, the resolution the app collects at
+  if (day.sleep_hours != null) digests.sleep_hours = fnv1a64(`sleep_hours:${Math.round(day.sleep_hours * 10)}`)
+  if (day.calories != null) digests.calories = fnv1a64(`calories:${day.calories}`)
+  if (day.heart_rate_series != null) {
+    const series = day.heart_rate_series
+    digests.heart_rate_series = fnv1a64(`heart_rate_series:${series.bucket_minutes};${series.offset.join(',')};`
+      + `${series.min.join(',')};${series.max.join(',')};${series.avg.join(',')};${series.count.join(',')}`)
+  }
+  return digests
+}
@@ -1,16 +1,24 @@
 import { createClient } from 'https://esm.sh/@supabase/supabase-js@2'
+import { COLUMNAR_CONTENT_TYPE, decodeColumnar, type HeartRateSeriesInput } from './columnar.ts'
+import { dayDigests } from './digest.ts'
 
 const corsHeaders = {
   'Access-Control-Allow-Origin': '*',
-  'Access-Control-Allow-Headers': 'authorization, x-client-info, apikey, content-type, x-signature, x-idempotency-key',
+  'Access-Control-Allow-Headers': 'authorization, x-client-info, apikey, content-type, content-encoding, x-signature, x-idempotency-key',
+  // Sent on every response so the companion app can switch to the columnar encoding
+  'Accept-Post': `application/json, ${COLUMNAR_CONTENT_TYPE}`,
 }
 
+// Seconds a device waits before resending a batch the database could not store
+const BATCH_RETRY_AFTER_SECONDS = 120
+
 interface HealthDataInput {
   date: string;
   steps?: number;
   heart_rate?: number;
   sleep_hours?: number;
   calories?: number;
+  heart_rate_series?: HeartRateSeriesInput;
 }
 
 interface CompanionAppSyncData {
@@ -23,9 +31,19 @@ interface CompanionAppSyncData {
   data: HealthDataInput[];
 }
 
+// Intraday buckets are parallel arrays; reject anything that would not line up
+function isValidHeartRateSeries(series: HeartRateSeriesInput): boolean {
+  if (!Number.isInteger(series.bucket_minutes) || series.bucket_minutes <= 0 || series.bucket_minutes > 1440) {
+    return false
+  }
+  const size = series.offset?.length
+  return Array.isArray(series.offset) &&
+    [series.min, series.max, series.avg, series.count].every(values => Array.isArray(values) && values.length === size)
+}
+
 // Verify HMAC signature
 async function verifyHmacSignature(
-  body: string,
+  body: Uint8Array,
   signature: string,
   secret: string
 ): Promise<boolean> {
@@ -34,7 +52,6 @@ async function verifyHmacSignature(
     
     const encoder = new TextEncoder()
     const keyData = encoder.encode(secret)
-    const messageData = encoder.encode(body)
     
     const cryptoKey = await crypto.subtle.importKey(
       'raw',
@@ -44,7 +61,7 @@ async function verifyHmacSignature(
       ['sign']
     )
     
-    const signature_buffer = await crypto.subtle.sign('HMAC', cryptoKey, messageData)
+    const signature_buffer = await crypto.subtle.sign('HMAC', cryptoKey, body)
     const actualSignature = Array.from(new Uint8Array(signature_buffer))
       .map(b => b.toString(16).padStart(2, '0'))
       .join('')
@@ -112,17 +129,39 @@ Deno.serve(async (req) => {
     }
 
     if (req.method === 'POST') {
-      // Get request body as text first for HMAC verification
-      const bodyText = await req.text()
+      // Get the raw body first for HMAC verification. The companion app may
+      // gzip its payload and signs the uncompressed bytes.
+      const bodyBytes = new Uint8Array(
+        req.headers.get('Content-Encoding')?.toLowerCase() === 'gzip' && req.body
+          ? await new Response(req.body.pipeThrough(new DecompressionStream('gzip'))).arrayBuffer()
+          : await req.arrayBuffer()
+      )
+      const contentType = req.headers.get('Content-Type')?.split(';')[0].trim().toLowerCase()
       let body: HealthDataInput[] | CompanionAppSyncData
       
-      try {
-        body = JSON.parse(bodyText)
-      } catch {
+      if (contentType === COLUMNAR_CONTENT_TYPE) {
+        try {
+          body = decodeColumnar(bodyBytes)
+        } catch (error) {
+          return new Response(
+            JSON.stringify({ error: `Invalid columnar body: ${error instanceof Error ? error.message : error}` }),
+            { status: 400, headers: { ...corsHeaders, 'Content-Type': 'application/json' } }
+          )
+        }
+      } else if (contentType && contentType !== 'application/json' && contentType !== 'text/plain') {
         return new Response(
-          JSON.stringify({ error: 'Invalid JSON body' }),
-          { status: 400, headers: { ...corsHeaders, 'Content-Type': 'application/json' } }
+          JSON.stringify({ error: `Unsupported content type ${contentType}` }),
+          { status: 415, headers: { ...corsHeaders, 'Content-Type': 'application/json' } }
         )
+      } else {
+        try {
+          body = JSON.parse(new TextDecoder().decode(bodyBytes))
+        } catch {
+          return new Response(
+            JSON.stringify({ error: 'Invalid JSON body' }),
+            { status: 400, headers: { ...corsHeaders, 'Content-Type': 'application/json' } }
+          )
+        }
       }
 
       // Check if this is a companion app sync (has deviceId and platform)
@@ -179,7 +218,7 @@ Deno.serve(async (req) => {
         }
 
         // Verify HMAC
-        hmacValid = await verifyHmacSignature(bodyText, signature, deviceData.hmac_secret)
+        hmacValid = await verifyHmacSignature(bodyBytes, signature, deviceData.hmac_secret)
         if (!hmacValid) {
           console.error('HMAC verification failed')
           return new Response(
@@ -246,11 +285,25 @@ Deno.serve(async (req) => {
       }
 
       const results = []
+      // Digests of what was stored, per day, for the companion app's ledger
+      const digests: Record<string, Record<string, string>> = {}
+      // Per-day outcome for the companion app: stored days are acknowledged,
+      // invalid ones can never be stored, failed ones hit a storage error
+      const stored: string[] = []
+      const invalid: { date: string | null; error: string }[] = []
+      const failed: string[] = []
       
       for (const data of healthData) {
         // Validate required fields
         if (!data.date) {
           results.push({ error: 'Date is required', data })
+          invalid.push({ date: null, error: 'Date is required' })
+          continue
+        }
+
+        if (data.heart_rate_series && !isValidHeartRateSeries(data.heart_rate_series)) {
+          results.push({ error: 'Invalid heart_rate_series', data })
+          invalid.push({ date: data.date, error: 'Invalid heart_rate_series' })
           continue
         }
 
@@ -265,6 +318,7 @@ Deno.serve(async (req) => {
         if (selectError && selectError.code !== 'PGRST116') {
           console.error('Select error:', selectError)
           results.push({ error: selectError.message, data })
+          failed.push(data.date)
           continue
         }
 
@@ -277,7 +331,8 @@ Deno.serve(async (req) => {
               steps: data.steps,
               heart_rate: data.heart_rate,
               sleep_hours: data.sleep_hours,
-              calories: data.calories
+              calories: data.calories,
+              heart_rate_series: data.heart_rate_series
             })
             .eq('id', existingData.id)
             .select()
@@ -286,8 +341,11 @@ Deno.serve(async (req) => {
           if (updateError) {
             console.error('Update error:', updateError)
             results.push({ error: updateError.message, data })
+            failed.push(data.date)
           } else {
             results.push({ success: true, data: updatedData, action: 'updated' })
+            stored.push(data.date)
+            digests[data.date] = dayDigests(data)
           }
         } else {
           // Insert new record
@@ -299,7 +357,8 @@ Deno.serve(async (req) => {
               steps: data.steps,
               heart_rate: data.heart_rate,
               sleep_hours: data.sleep_hours,
-              calories: data.calories
+              calories: data.calories,
+              heart_rate_series: data.heart_rate_series
             })
             .select()
             .single()
@@ -307,23 +366,35 @@ Deno.serve(async (req) => {
           if (insertError) {
             console.error('Insert error:', insertError)
             results.push({ error: insertError.message, data })
+            failed.push(data.date)
           } else {
             results.push({ success: true, data: insertedData, action: 'created' })
+            stored.push(data.date)
+            digests[data.date] = dayDigests(data)
           }
         }
       }
 
+      const failedCount = results.filter(r => r.error).length
+      // Companion batches are acknowledged day by day: the stored days are
+      // listed with their digests even when others failed, and the idempotency
+      // key is released so the device can resend the rest. Only storage errors
+      // are worth resending; invalid days are answered with a 422 naming them.
+      const batchRejected = isCompanionSync && failedCount > 0
+      const invalidDates = invalid.map(r => r.date ?? '(no date)')
+
       // Update sync log with results
       if (syncLog) {
         await supabaseAuth
           .from('health_sync_logs')
           .update({
             sync_completed_at: new Date().toISOString(),
-            status: results.filter(r => r.error).length > 0 ? 'partial_success' : 'success',
+            status: failedCount > 0 ? 'partial_success' : 'success',
             records_synced: results.filter(r => r.success).length,
-            error_message: results.filter(r => r.error).length > 0 
-              ? `${results.filter(r => r.error).length} records failed` 
-              : null
+            error_message: failedCount > 0 
+              ? `${failedCount} records failed` 
+              : null,
+            ...(batchRejected ? { idempotency_key: null } : {})
           })
           .eq('id', syncLog.id)
       }
@@ -336,10 +407,20 @@ Deno.serve(async (req) => {
           summary: {
             total: results.length,
             successful: results.filter(r => r.success).length,
-            failed: results.filter(r => r.error).length
-          }
+            failed: failedCount
+          },
+          ...(isCompanionSync ? { stored, invalid, failed, digests } : {}),
+          ...(isCompanionSync && failed.length === 0 && invalid.length > 0
+            ? { error: `Invalid records for ${invalidDates.join(', ')}` }
+            : {})
         }),
-        { headers: { ...corsHeaders, 'Content-Type': 'application/json' } }
+        isCompanionSync && failed.length > 0
+          // Failed writes are the database struggling; spread the retries out
+          ? { status: 503, headers: { ...corsHeaders, 'Content-Type': 'application/json', 'Retry-After': String(BATCH_RETRY_AFTER_SECONDS) } }
+          : isCompanionSync && invalid.length > 0
+            // Resending the same records cannot help
+            ? { status: 422, headers: { ...corsHeaders, 'Content-Type': 'application/json' } }
+            : { status: 200, headers: { ...corsHeaders, 'Content-Type': 'application/json' } }
       )
     }
 
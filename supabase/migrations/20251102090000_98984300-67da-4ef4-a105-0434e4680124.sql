@@ -0,0 +1,4 @@
+-- Intraday heart rate uploaded by the companion app, as fixed-width buckets:
+-- { bucket_minutes, offset[], min[], max[], avg[], count[] }
+ALTER TABLE public.health_data
+ADD COLUMN IF NOT EXISTS heart_rate_series JSONB;